@@ -0,0 +1,93 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.dtos.ClickEventDTO;
+import com.andreibel.shortlink.moduels.ClickEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Daily click aggregation for one URL mapping over a month of events.
+ * <p>
+ * {@code groupingBy} is the original in-Java aggregation over loaded {@link ClickEvent}
+ * entities; it does not include loading them. {@code sqlGroupBy} runs the equivalent
+ * GROUP BY query on an embedded H2 database holding the same events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsAggregationBenchmark {
+
+    private static final LocalDateTime START = LocalDate.of(2025, 1, 1).atStartOfDay();
+    private static final int DAYS = 30;
+    private static final String COUNT_DAILY_CLICKS =
+            "select cast(click_date as date), count(*) from click_event " +
+            "where url_mapping_id = ? and click_date between ? and ? " +
+            "group by cast(click_date as date) order by cast(click_date as date)";
+
+    @Param({"10000", "1000000"})
+    public int events;
+
+    private List<ClickEvent> clickEvents;
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        clickEvents = new ArrayList<>(events);
+        List<Object[]> rows = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            LocalDateTime clickDate = START.plusSeconds(random.nextInt(DAYS * 86_400));
+            ClickEvent event = new ClickEvent();
+            event.setClickDate(clickDate);
+            clickEvents.add(event);
+            rows.add(new Object[]{1L, Timestamp.valueOf(clickDate)});
+        }
+
+        database = BenchmarkContexts.embeddedDatabase();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("create table click_event (id bigint auto_increment primary key, " +
+                "url_mapping_id bigint not null, click_date timestamp)");
+        jdbcTemplate.execute("create index idx_click_event_mapping_date on click_event (url_mapping_id, click_date)");
+        jdbcTemplate.batchUpdate("insert into click_event (url_mapping_id, click_date) values (?, ?)", rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<ClickEventDTO> groupingBy() {
+        return clickEvents.stream()
+                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))
+                .entrySet().stream()
+                .map(entry -> {
+                    ClickEventDTO clickEventDTO = new ClickEventDTO();
+                    clickEventDTO.setClickDate(entry.getKey());
+                    clickEventDTO.setCount(entry.getValue());
+                    return clickEventDTO;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<ClickEventDTO> sqlGroupBy() {
+        return jdbcTemplate.query(COUNT_DAILY_CLICKS,
+                (rs, rowNum) -> new ClickEventDTO(rs.getDate(1).toLocalDate(), rs.getLong(2)),
+                1L, Timestamp.valueOf(START), Timestamp.valueOf(START.plusDays(DAYS)));
+    }
+}
@@ -0,0 +1,71 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.ShortLinkApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Shared setup for the benchmarks: the application context and plain databases on embedded H2.
+ */
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * Starts the application without a web server against a fresh in-memory H2 database.
+     *
+     * @param properties additional {@code key=value} properties, overriding the defaults
+     * @return the started application context
+     */
+    static ConfigurableApplicationContext startApplication(String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.show-sql=false",
+                "frontend.url=http://localhost:5173",
+                "jwt.secret=" + randomSecret(),
+                "logging.level.root=WARN"));
+        all.addAll(List.of(properties));
+        return new SpringApplicationBuilder(ShortLinkApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(all.toArray(String[]::new))
+                .run();
+    }
+
+    /**
+     * Creates an empty in-memory H2 database outside of any application context.
+     *
+     * @return the database; callers shut it down
+     */
+    static EmbeddedDatabase embeddedDatabase() {
+        return new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+    }
+
+    /**
+     * Returns a random base64 encoded 256-bit HMAC secret.
+     *
+     * @return the secret
+     */
+    static String randomSecret() {
+        byte[] secret = new byte[32];
+        ThreadLocalRandom.current().nextBytes(secret);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+}
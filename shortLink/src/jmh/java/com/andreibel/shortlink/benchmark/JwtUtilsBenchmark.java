@@ -0,0 +1,62 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.security.jqt.JwtUtils;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation and username extraction in {@link JwtUtils}.
+ * <p>
+ * {@code authenticate} is what {@code JwtAuthenticationFilter} did for every request before
+ * {@link JwtUtils#parseClaims(String)}. With {@code cacheSize=0} every call verifies the token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    @Param({"0", "10000"})
+    public long cacheSize;
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", BenchmarkContexts.randomSecret());
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 172_800_000);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheMaximumSize", cacheSize);
+        ReflectionTestUtils.setField(jwtUtils, "meterRegistry", new SimpleMeterRegistry());
+        jwtUtils.init();
+        token = jwtUtils.generateToken(User.withUsername("bench").password("bench").roles("USER").build());
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtUtils.validateToken(token);
+    }
+
+    @Benchmark
+    public String getUsernameFromJwtToken() {
+        return jwtUtils.getUsernameFromJwtToken(token);
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtUtils.parseClaims(token);
+    }
+
+    @Benchmark
+    public String authenticate() {
+        return jwtUtils.validateToken(token) ? jwtUtils.getUsernameFromJwtToken(token) : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.dtos.BulkShortenResultDTO;
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.repository.UserRepository;
+import com.andreibel.shortlink.service.BulkShortenService;
+import com.andreibel.shortlink.service.UrlMappingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Redirect resolution through {@link UrlMappingService#getOriginalUrlByShortUrl(String)}
+ * against the full application context on an embedded H2 database.
+ * <p>
+ * With {@code cached=false} the redirect cache holds no entries, so every call goes to the
+ * database. Clicks are recorded as in production and written by the background writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RedirectBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"10000"})
+    public int mappings;
+
+    private ConfigurableApplicationContext context;
+    private UrlMappingService urlMappingService;
+    private String[] shortUrls;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContexts.startApplication(
+                "shortlink.cache.redirect.maximum-size=" + (cached ? mappings : 0));
+        urlMappingService = context.getBean(UrlMappingService.class);
+
+        User user = new User();
+        user.setEmail("bench@example.com");
+        user.setUsername("bench");
+        user.setPassword("bench");
+        user = context.getBean(UserRepository.class).save(user);
+
+        List<String> created = new ArrayList<>(mappings);
+        context.getBean(BulkShortenService.class).createShortUrls(
+                IntStream.range(0, mappings).mapToObj(i -> "https://example.com/page/" + i).iterator(),
+                user,
+                result -> created.add(shortUrl(result)));
+        shortUrls = created.toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResolvedUrlDTO resolve() {
+        return urlMappingService.getOriginalUrlByShortUrl(shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)]);
+    }
+
+    private static String shortUrl(BulkShortenResultDTO result) {
+        if (result.getUrlMapping() == null) {
+            throw new IllegalStateException("Seeding failed: " + result.getError());
+        }
+        return result.getUrlMapping().getShortUrl();
+    }
+}
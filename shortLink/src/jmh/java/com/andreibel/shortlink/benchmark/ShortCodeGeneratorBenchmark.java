@@ -0,0 +1,73 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.service.shortcode.BlockSequenceShortCodeGenerator;
+import com.andreibel.shortlink.service.shortcode.RandomShortCodeGenerator;
+import com.andreibel.shortlink.service.shortcode.ShortCodeGenerator;
+import com.andreibel.shortlink.service.shortcode.SnowflakeShortCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short code generation throughput with eight threads competing for the same generator.
+ * <p>
+ * {@code legacy} is the original per-call {@code new Random()} generator; {@code block}
+ * reserves its blocks from an embedded H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ShortCodeGeneratorBenchmark {
+
+    @Param({"legacy", "random", "snowflake", "block"})
+    public String strategy;
+
+    private ShortCodeGenerator generator;
+    private EmbeddedDatabase database;
+
+    @Setup
+    public void setUp() {
+        generator = switch (strategy) {
+            case "legacy" -> ShortCodeGeneratorBenchmark::legacyCode;
+            case "random" -> new RandomShortCodeGenerator();
+            case "snowflake" -> new SnowflakeShortCodeGenerator(0);
+            case "block" -> {
+                database = BenchmarkContexts.embeddedDatabase();
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+                jdbcTemplate.execute("create table short_code_sequence (name varchar(255) primary key, next_value bigint)");
+                yield new BlockSequenceShortCodeGenerator(jdbcTemplate, new DataSourceTransactionManager(database), 1000);
+            }
+            default -> throw new IllegalArgumentException("Unknown strategy " + strategy);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (database != null) {
+            database.shutdown();
+        }
+    }
+
+    @Benchmark
+    public String nextCode() {
+        return generator.nextCode();
+    }
+
+    private static String legacyCode() {
+        String allowedChars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        Random random = new Random();
+        StringBuilder shortUrl = new StringBuilder(8);
+        for (int i = 0; i < 8; i++) {
+            shortUrl.append(allowedChars.charAt(random.nextInt(allowedChars.length())));
+        }
+        return shortUrl.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.andreibel.shortlink.benchmark;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.service.index.ShortCodeIndex;
+import com.andreibel.shortlink.service.shortcode.Base62;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in the memory-mapped {@link ShortCodeIndex}. Run with {@code -prof gc} to confirm
+ * that {@code findId} allocates nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortCodeIndexBenchmark {
+
+    @Param({"1000000"})
+    public int entries;
+
+    private Path file;
+    private ShortCodeIndex index;
+    private String[] codes;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("short-code-index", ".bin");
+        codes = new String[entries];
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, entries)) {
+            for (int i = 0; i < entries; i++) {
+                codes[i] = Base62.encode(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) % 218_340_105_584_896L, 8);
+                builder.add(i + 1, codes[i], "https://example.com/page/" + i);
+            }
+            builder.finish(entries);
+        }
+        index = ShortCodeIndex.open(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        index.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long findId() {
+        return index.findId(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+
+    @Benchmark
+    public ResolvedUrlDTO resolve() {
+        return index.resolve(codes[ThreadLocalRandom.current().nextInt(codes.length)]);
+    }
+
+    @Benchmark
+    public long miss() {
+        return index.findId("zzzzzzzz");
+    }
+}
@@ -0,0 +1,49 @@
+package com.andreibel.shortlink.controller;
+
+import com.andreibel.shortlink.dtos.TopLinksDTO;
+import com.andreibel.shortlink.service.toplinks.TopLinksService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for operational views restricted to administrators.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@AllArgsConstructor
+public class AdminController {
+    private static final int MAX_TOP_LINKS = 1000;
+
+    /**
+     * Service tracking the most clicked links.
+     */
+    private final TopLinksService topLinksService;
+
+    /**
+     * Retrieves the most clicked links of a recent time window on this instance.
+     *
+     * @param window {@code 5m} (default) or {@code 1h}
+     * @param limit  the maximum number of links to return, at most 1000
+     * @return a {@link ResponseEntity} containing the {@link TopLinksDTO}, or 400 if the window is unknown
+     */
+    @GetMapping("/top-links")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TopLinksDTO> getTopLinks(@RequestParam(value = "window", defaultValue = "5m") String window,
+                                                   @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        TopLinksService.Window topLinksWindow;
+        try {
+            topLinksWindow = TopLinksService.Window.fromLabel(window);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit < 1 || limit > MAX_TOP_LINKS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(topLinksService.getTopLinks(topLinksWindow, limit));
+    }
+}
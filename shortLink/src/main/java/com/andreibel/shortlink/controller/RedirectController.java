@@ -1,7 +1,8 @@
 package com.andreibel.shortlink.controller;
 
-    import com.andreibel.shortlink.moduels.UrlMapping;
+    import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
     import com.andreibel.shortlink.service.UrlMappingService;
+    import jakarta.servlet.http.HttpServletRequest;
     import lombok.AllArgsConstructor;
     import org.springframework.http.HttpHeaders;
     import org.springframework.http.ResponseEntity;
@@ -27,17 +28,20 @@ package com.andreibel.shortlink.controller;
          * Handles HTTP GET requests for a short URL token.
          * <p>
          * Looks up the original URL for the given short URL token and returns a 302 redirect response.
-         * If the short URL does not exist, returns a 404 Not Found response.
+         * If the short URL does not exist, returns a 404 Not Found response. The visitor is identified
+         * by the client address and user agent, which are only hashed for resolved codes.
          *
          * @param shortUrl the short URL token to resolve
+         * @param request  the HTTP request
          * @return a {@link ResponseEntity} with a 302 redirect to the original URL, or 404 if not found
          */
         @GetMapping("/{shortUrl}")
-        public ResponseEntity<Void> getTotalClicksByDate(@PathVariable String shortUrl) {
-            UrlMapping urlMapping = urlMappingService.getOriginalUrlByShortUrl(shortUrl);
-            if (urlMapping != null) {
+        public ResponseEntity<Void> getTotalClicksByDate(@PathVariable String shortUrl, HttpServletRequest request) {
+            ResolvedUrlDTO resolved = urlMappingService.getOriginalUrlByShortUrl(shortUrl,
+                    request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT));
+            if (resolved != null) {
                 HttpHeaders httpHeaders = new HttpHeaders();
-                httpHeaders.add("Location", urlMapping.getOriginalUrl());
+                httpHeaders.add("Location", resolved.getOriginalUrl());
                 return ResponseEntity.status(302).headers(httpHeaders).build();
             } else {
                 return ResponseEntity.notFound().build();
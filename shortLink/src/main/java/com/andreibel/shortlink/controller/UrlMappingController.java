@@ -1,20 +1,40 @@
 package com.andreibel.shortlink.controller;
 
 import com.andreibel.shortlink.dtos.ClickEventDTO;
+import com.andreibel.shortlink.dtos.UniqueVisitorsDTO;
 import com.andreibel.shortlink.dtos.UrlMappingDTO;
+import com.andreibel.shortlink.dtos.UrlMappingPageDTO;
 import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.service.BulkShortenService;
+import com.andreibel.shortlink.service.ClickExportService;
 import com.andreibel.shortlink.service.UrlMappingService;
 import com.andreibel.shortlink.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -27,6 +47,10 @@ import java.util.Map;
 @RequestMapping("/api/urls")
 @AllArgsConstructor
 public class UrlMappingController {
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_PAGE_SIZE = 500;
+
     /**
      * Service for URL mapping operations.
      */
@@ -37,6 +61,21 @@ public class UrlMappingController {
      */
     private final UserService userService;
 
+    /**
+     * Service for shortening many URLs in one request.
+     */
+    private final BulkShortenService bulkShortenService;
+
+    /**
+     * Mapper used to read NDJSON request lines and write NDJSON results.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Service streaming raw click events.
+     */
+    private final ClickExportService clickExportService;
+
     /**
      * Creates a short URL for the given original URL.
      *
@@ -54,17 +93,108 @@ public class UrlMappingController {
     }
 
     /**
-     * Retrieves all short URLs created by the authenticated user.
+     * Creates short URLs for a JSON array of original URLs.
+     * <p>
+     * Each element is either a string or an object with an {@code originalUrl} field.
+     * Results are streamed back as NDJSON, one {@link com.andreibel.shortlink.dtos.BulkShortenResultDTO}
+     * per element in request order, with per-item errors reported inline.
      *
+     * @param request   the original URLs to shorten
      * @param principal the authenticated user principal
+     * @return a {@link ResponseEntity} streaming the results
+     */
+    @PostMapping(value = "/shorten/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> createShortUrls(@RequestBody List<JsonNode> request, Principal principal) {
+        User user = userService.findByUsername(principal.getName());
+        Iterator<String> originalUrls = request.stream().map(this::readOriginalUrl).iterator();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(streamBulkResults(originalUrls, user));
+    }
+
+    /**
+     * Creates short URLs for a streamed NDJSON body of original URLs.
+     * <p>
+     * The body is read line by line while results are written, so neither side is held in memory.
+     * Each line is either a JSON string or an object with an {@code originalUrl} field.
+     *
+     * @param request   the HTTP request whose body is read
+     * @param principal the authenticated user principal
+     * @return a {@link ResponseEntity} streaming the results
+     * @throws IOException if the request body cannot be opened
+     */
+    @PostMapping(value = "/shorten/bulk", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> createShortUrlsFromStream(HttpServletRequest request, Principal principal) throws IOException {
+        User user = userService.findByUsername(principal.getName());
+        BufferedReader reader = request.getReader();
+        Iterator<String> originalUrls = reader.lines()
+                .filter(line -> !line.isBlank())
+                .map(this::readOriginalUrlLine)
+                .iterator();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(streamBulkResults(originalUrls, user));
+    }
+
+    private StreamingResponseBody streamBulkResults(Iterator<String> originalUrls, User user) {
+        return out -> bulkShortenService.createShortUrls(originalUrls, user, result -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private String readOriginalUrlLine(String line) {
+        try {
+            return readOriginalUrl(objectMapper.readTree(line));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private String readOriginalUrl(JsonNode node) {
+        if (node.isTextual()) {
+            return node.asText();
+        }
+        JsonNode originalUrl = node.get("originalUrl");
+        return originalUrl != null && originalUrl.isTextual() ? originalUrl.asText() : null;
+    }
+
+    /**
+     * Retrieves one page of the short URLs created by the authenticated user.
+     * <p>
+     * Pages are ordered by creation date. When more mappings remain, the cursor for the next
+     * page is returned in the {@code X-Next-Cursor} response header.
+     *
+     * @param principal the authenticated user principal
+     * @param cursor    the cursor from the previous page, or absent for the first page
+     * @param size      the maximum number of mappings to return (1-500)
+     * @param direction {@code desc} for newest first (default) or {@code asc} for oldest first
      * @return a {@link ResponseEntity} containing a list of {@link UrlMappingDTO}
      */
     @GetMapping("/myurls")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal) {
+    public ResponseEntity<List<UrlMappingDTO>> getUserUrls(Principal principal,
+                                                           @RequestParam(value = "cursor", required = false) String cursor,
+                                                           @RequestParam(value = "size", defaultValue = "100") int size,
+                                                           @RequestParam(value = "direction", defaultValue = "desc") String direction) {
         User user = userService.findByUsername(principal.getName());
-        List<UrlMappingDTO> userUrls = urlMappingService.getUserUrls(user);
-        return ResponseEntity.ok(userUrls);
+        UrlMappingPageDTO page;
+        try {
+            page = urlMappingService.getUserUrls(user, cursor, Math.clamp(size, 1, MAX_PAGE_SIZE), Sort.Direction.fromString(direction));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 
     /**
@@ -86,6 +216,75 @@ public class UrlMappingController {
     }
 
 
+    /**
+     * Streams the raw click events of a short URL owned by the authenticated user.
+     * <p>
+     * Events are written as they are read from the database, so the response size is not
+     * limited by memory. Without a range, every event still in the database is exported.
+     *
+     * @param shortUrl  the short URL token
+     * @param format    {@code ndjson} (default) or {@code csv}
+     * @param startDate the start date-time in ISO format (inclusive), optional
+     * @param endDate   the end date-time in ISO format (exclusive), optional
+     * @param principal the authenticated user principal
+     * @return a {@link ResponseEntity} streaming the events, or 404 if the user does not own the short URL
+     */
+    @GetMapping("/analytics/{shortUrl}/export")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> exportClickEvents(@PathVariable String shortUrl,
+                                                                   @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                                   @RequestParam(value = "startDate", required = false) String startDate,
+                                                                   @RequestParam(value = "endDate", required = false) String endDate,
+                                                                   Principal principal) {
+        ClickExportService.Format exportFormat;
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            exportFormat = ClickExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+            start = startDate == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : LocalDateTime.parse(startDate, DateTimeFormatter.ISO_DATE_TIME);
+            end = endDate == null ? LocalDateTime.now().plusDays(1) : LocalDateTime.parse(endDate, DateTimeFormatter.ISO_DATE_TIME);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        User user = userService.findByUsername(principal.getName());
+        Long urlMappingId = urlMappingService.getOwnedMappingId(shortUrl, user);
+        if (urlMappingId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean csv = exportFormat == ClickExportService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("clicks-" + shortUrl + (csv ? ".csv" : ".ndjson"))
+                        .build()
+                        .toString())
+                .body(out -> clickExportService.export(urlMappingId, start, end, exportFormat, out));
+    }
+
+    /**
+     * Estimates the unique visitors of a short URL owned by the authenticated user within a date range.
+     *
+     * @param shortUrl  the short URL token
+     * @param startDate the start date in ISO format (yyyy-MM-dd)
+     * @param endDate   the end date in ISO format (yyyy-MM-dd), inclusive
+     * @param principal the authenticated user principal
+     * @return a {@link ResponseEntity} containing the {@link UniqueVisitorsDTO}, or 404 if the user does not own the short URL
+     */
+    @GetMapping("/analytics/{shortUrl}/visitors")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<UniqueVisitorsDTO> getUniqueVisitors(@PathVariable String shortUrl, @RequestParam("startDate") String startDate, @RequestParam("endDate") String endDate, Principal principal) {
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        User user = userService.findByUsername(principal.getName());
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        UniqueVisitorsDTO visitors = urlMappingService.getUniqueVisitors(shortUrl, user, start, end);
+        if (visitors == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(visitors);
+    }
+
     @DeleteMapping("/{shortUrl}")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Void> deleteUrlMapping(@PathVariable String shortUrl, Principal principal) {
@@ -113,4 +312,22 @@ public class UrlMappingController {
         Map<LocalDate, Long> totalClicks = urlMappingService.getTotalClicksByUserAndDate(user, start, end);
         return ResponseEntity.ok(totalClicks);
     }
+
+    /**
+     * Estimates the unique visitors across all short URLs of the authenticated user within a date range.
+     *
+     * @param principal the authenticated user principal
+     * @param startDate the start date in ISO format (yyyy-MM-dd)
+     * @param endDate   the end date in ISO format (yyyy-MM-dd), inclusive
+     * @return a {@link ResponseEntity} containing the {@link UniqueVisitorsDTO}
+     */
+    @GetMapping("/totalVisitors")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<UniqueVisitorsDTO> getTotalVisitors(Principal principal, @RequestParam("startDate") String startDate, @RequestParam("endDate") String endDate) {
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
+        User user = userService.findByUsername(principal.getName());
+        LocalDate start = LocalDate.parse(startDate, formatter);
+        LocalDate end = LocalDate.parse(endDate, formatter);
+        return ResponseEntity.ok(urlMappingService.getUniqueVisitorsByUser(user, start, end));
+    }
 }
\ No newline at end of file
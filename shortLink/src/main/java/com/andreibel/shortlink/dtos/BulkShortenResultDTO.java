@@ -0,0 +1,23 @@
+package com.andreibel.shortlink.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object for one item of a bulk shorten request.
+ * <p>
+ * Carries the position of the item in the request, the original URL, and either the
+ * created {@link UrlMappingDTO} or an error message explaining why the item was rejected.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkShortenResultDTO {
+    private int index;
+    private String originalUrl;
+    private UrlMappingDTO urlMapping;
+    private String error;
+}
@@ -1,6 +1,8 @@
 package com.andreibel.shortlink.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
 /**
@@ -9,6 +11,8 @@ import java.time.LocalDate;
  * Contains the date of the click event and the number of clicks recorded on that date.
  */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class ClickEventDTO {
     private LocalDate clickDate;
     private Long count;
@@ -0,0 +1,17 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+/**
+ * Data Transfer Object representing the estimated unique visitors of one day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyVisitorsDTO {
+    private LocalDate date;
+    private Long visitors;
+}
@@ -0,0 +1,16 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.Value;
+
+/**
+ * Immutable result of resolving a short URL token on the redirect path.
+ * <p>
+ * Holds only what a redirect needs: the id of the mapping (to attribute the click)
+ * and the original URL to send the client to. Instances are cached, so they never
+ * reference a JPA entity or session.
+ */
+@Value
+public class ResolvedUrlDTO {
+    Long id;
+    String originalUrl;
+}
@@ -0,0 +1,21 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data Transfer Object representing one of the most clicked links of a time window.
+ * <p>
+ * {@code clicks} is a Count-Min Sketch estimate: it never undercounts and may slightly overcount.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopLinkDTO {
+    private Long id;
+    private String shortUrl;
+    private String originalUrl;
+    private String username;
+    private Long clicks;
+}
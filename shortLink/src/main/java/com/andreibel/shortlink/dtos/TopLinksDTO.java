@@ -0,0 +1,20 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object representing the most clicked links of a sliding time window on one instance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopLinksDTO {
+    private String window;
+    private Long windowSeconds;
+    private Long totalClicks;
+    private List<TopLinkDTO> links;
+}
@@ -0,0 +1,20 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+/**
+ * Data Transfer Object representing estimated unique visitors over a range of days.
+ * <p>
+ * {@code uniqueVisitors} counts each visitor once over the whole range, so it is usually
+ * less than the sum of the daily estimates. Estimates have a standard error of about 1.6%.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UniqueVisitorsDTO {
+    private Long uniqueVisitors;
+    private List<DailyVisitorsDTO> daily;
+}
@@ -1,7 +1,9 @@
 package com.andreibel.shortlink.dtos;
 
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
@@ -12,6 +14,8 @@ import java.time.LocalDateTime;
  * the generated short URL, click count, creation date, and the username of the owner.
  */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class UrlMappingDTO {
     private Long id;
     private String originalUrl;
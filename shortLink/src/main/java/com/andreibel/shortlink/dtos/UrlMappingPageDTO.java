@@ -0,0 +1,19 @@
+package com.andreibel.shortlink.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Data Transfer Object for one page of a user's URL mappings.
+ * <p>
+ * Holds the mappings on the page and an opaque cursor for the next page,
+ * which is null when there are no more mappings.
+ */
+@Data
+@AllArgsConstructor
+public class UrlMappingPageDTO {
+    private List<UrlMappingDTO> items;
+    private String nextCursor;
+}
@@ -0,0 +1,44 @@
+package com.andreibel.shortlink.moduels;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Entity class holding the number of clicks a URL mapping received on one day.
+ * Maps to the 'click_daily_rollup' table in the database.
+ * <p>
+ * Rows are maintained incrementally as click events are ingested, so analytics
+ * queries scale with the number of days rather than the number of clicks. The table
+ * is keyed by (url_mapping_id, click_day) so rows can be written with plain SQL.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "click_daily_rollup")
+@IdClass(ClickDailyRollupId.class)
+public class ClickDailyRollup {
+    /**
+     * Day the clicks were counted for.
+     * Part of the primary key.
+     */
+    @Id
+    private LocalDate clickDay;
+
+    /**
+     * Number of clicks on that day.
+     */
+    @Column(nullable = false)
+    private Long clickCount = 0L;
+
+    /**
+     * Reference to the URL mapping the clicks belong to.
+     * Many-to-one relationship; loaded lazily. Part of the primary key.
+     */
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "url_mapping_id", nullable = false)
+    private UrlMapping urlMapping;
+}
@@ -0,0 +1,30 @@
+package com.andreibel.shortlink.moduels;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Composite primary key of {@link ClickDailyRollup} and {@link ClickDailyVisitors}: one row per URL mapping and day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickDailyRollupId implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Id of the URL mapping.
+     */
+    private Long urlMapping;
+
+    /**
+     * Day the clicks were counted for.
+     */
+    private LocalDate clickDay;
+}
@@ -0,0 +1,45 @@
+package com.andreibel.shortlink.moduels;
+
+import com.andreibel.shortlink.service.visitor.HyperLogLog;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Entity class holding a sketch of the distinct visitors a URL mapping had on one day.
+ * Maps to the 'click_daily_visitors' table in the database.
+ * <p>
+ * The sketch is a serialized {@link HyperLogLog} of hashed visitor keys, so its size is
+ * bounded no matter how many visitors there were. Like {@link ClickDailyRollup}, the table is
+ * keyed by (url_mapping_id, click_day) and written with plain SQL.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "click_daily_visitors")
+@IdClass(ClickDailyRollupId.class)
+public class ClickDailyVisitors {
+    /**
+     * Day the visitors were counted for.
+     * Part of the primary key.
+     */
+    @Id
+    private LocalDate clickDay;
+
+    /**
+     * Serialized HyperLogLog sketch of the visitors on that day.
+     */
+    @Column(nullable = false, length = HyperLogLog.MAX_SERIALIZED_SIZE)
+    private byte[] sketch;
+
+    /**
+     * Reference to the URL mapping the visitors belong to.
+     * Many-to-one relationship; loaded lazily. Part of the primary key.
+     */
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "url_mapping_id", nullable = false)
+    private UrlMapping urlMapping;
+}
@@ -10,23 +10,33 @@ import java.time.LocalDateTime;
 /**
  * Entity class representing a click event for a URL mapping.
  * Maps to the 'click_event' table in the database.
+ * <p>
+ * On PostgreSQL the table may be partitioned by month of {@code click_date}; see
+ * {@code db/migration/postgresql/partition-click-event.sql}.
  */
 @Entity
 @Getter
 @Setter
-@Table(name = "click_event")
+@Table(name = "click_event",
+        indexes = {
+                @Index(name = "idx_click_event_mapping_date", columnList = "url_mapping_id, clickDate"),
+                @Index(name = "idx_click_event_date", columnList = "clickDate")
+        })
 public class ClickEvent {
     /**
      * Unique identifier for the click event.
-     * Auto-generated by the database.
+     * Drawn from a pooled sequence so inserts can be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "click_event_seq")
+    @SequenceGenerator(name = "click_event_seq", sequenceName = "click_event_seq", allocationSize = 500)
     private Long id;
 
     /**
      * Date when the click occurred.
+     * Partition key when the table is partitioned, so it is never null.
      */
+    @Column(nullable = false)
     private LocalDateTime clickDate;
 
     /**
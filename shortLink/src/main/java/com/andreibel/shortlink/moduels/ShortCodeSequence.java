@@ -0,0 +1,33 @@
+package com.andreibel.shortlink.moduels;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Entity class holding the high-water mark of a block-allocated sequence.
+ * Maps to the 'short_code_sequence' table in the database.
+ * <p>
+ * Each application node reserves a block of values by advancing {@code nextValue}
+ * and then hands them out from memory.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "short_code_sequence")
+public class ShortCodeSequence {
+    /**
+     * Name of the sequence.
+     */
+    @Id
+    private String name;
+
+    /**
+     * First value not yet reserved by any node.
+     */
+    @Column(nullable = false)
+    private Long nextValue;
+}
@@ -19,14 +19,21 @@ import java.util.List;
 @Table(name = "url_mapping",
 
         indexes = {
-                @Index(name = "idx_shortUrl", columnList = "shortUrl")
+                @Index(name = "idx_shortUrl", columnList = "shortUrl"),
+                @Index(name = "idx_url_mapping_user_created", columnList = "user_id, createdDate, id"),
+                @Index(name = "idx_url_mapping_created", columnList = "createdDate")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_url_mapping_short_url", columnNames = "shortUrl")
         })
 public class UrlMapping {
     /**
      * Unique identifier for this URL mapping (auto-generated).
+     * Drawn from a pooled sequence so inserts can be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "url_mapping_seq")
+    @SequenceGenerator(name = "url_mapping_seq", sequenceName = "url_mapping_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -35,8 +42,9 @@ public class UrlMapping {
     private String originalUrl;
 
     /**
-     * The generated short URL token.
+     * The generated short URL token. Unique across all mappings.
      */
+    @Column(nullable = false)
     private String shortUrl;
 
     /**
@@ -63,4 +71,18 @@ public class UrlMapping {
      */
     @OneToMany(mappedBy = "urlMapping", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ClickEvent> clickEvents;
+
+    /**
+     * Daily click rollups associated with this URL mapping.
+     * One-to-many relationship with cascade all and orphan removal.
+     */
+    @OneToMany(mappedBy = "urlMapping", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<ClickDailyRollup> dailyRollups;
+
+    /**
+     * Daily visitor sketches associated with this URL mapping.
+     * One-to-many relationship with cascade all and orphan removal.
+     */
+    @OneToMany(mappedBy = "urlMapping", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<ClickDailyVisitors> dailyVisitors;
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ import lombok.Setter;
  *
  * Fields:
  * <ul>
- *   <li>id - Primary key, auto-generated</li>
+ *   <li>id - Primary key, generated from a pooled sequence</li>
  *   <li>email - User's email address, must be unique and not null</li>
  *   <li>username - User's display name</li>
  *   <li>password - User's hashed password</li>
@@ -24,10 +24,11 @@ import lombok.Setter;
 public class User {
     /**
      * Unique identifier for the user.
-     * Auto-generated by the database.
+     * Drawn from a pooled sequence.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -0,0 +1,52 @@
+package com.andreibel.shortlink.repository;
+
+import com.andreibel.shortlink.dtos.ClickEventDTO;
+import com.andreibel.shortlink.moduels.ClickDailyRollup;
+import com.andreibel.shortlink.moduels.ClickDailyRollupId;
+import com.andreibel.shortlink.moduels.UrlMapping;
+import com.andreibel.shortlink.moduels.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository interface for managing {@link ClickDailyRollup} entities.
+ * <p>
+ * Provides per-day click counts for a single URL mapping or for all mappings of a user.
+ */
+@Repository
+public interface ClickDailyRollupRepository extends JpaRepository<ClickDailyRollup, ClickDailyRollupId> {
+
+    /**
+     * Returns the daily click counts of a URL mapping within a range of days.
+     *
+     * @param urlMapping the URL mapping to filter by
+     * @param startDay   the first day of the range (inclusive)
+     * @param endDay     the last day of the range (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Query("select new com.andreibel.shortlink.dtos.ClickEventDTO(r.clickDay, r.clickCount) from ClickDailyRollup r " +
+            "where r.urlMapping = :urlMapping and r.clickDay between :startDay and :endDay order by r.clickDay")
+    List<ClickEventDTO> findDailyClicks(@Param("urlMapping") UrlMapping urlMapping,
+                                        @Param("startDay") LocalDate startDay,
+                                        @Param("endDay") LocalDate endDay);
+
+    /**
+     * Returns the daily click counts summed over every URL mapping of a user within a range of days.
+     *
+     * @param user     the owner of the URL mappings
+     * @param startDay the first day of the range (inclusive)
+     * @param endDay   the last day of the range (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Query("select new com.andreibel.shortlink.dtos.ClickEventDTO(r.clickDay, sum(r.clickCount)) from ClickDailyRollup r " +
+            "where r.urlMapping.user = :user and r.clickDay between :startDay and :endDay " +
+            "group by r.clickDay order by r.clickDay")
+    List<ClickEventDTO> findDailyClicksByUser(@Param("user") User user,
+                                              @Param("startDay") LocalDate startDay,
+                                              @Param("endDay") LocalDate endDay);
+}
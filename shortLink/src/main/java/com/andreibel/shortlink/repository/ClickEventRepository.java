@@ -1,8 +1,12 @@
 package com.andreibel.shortlink.repository;
 
+import com.andreibel.shortlink.dtos.ClickEventDTO;
 import com.andreibel.shortlink.moduels.ClickEvent;
 import com.andreibel.shortlink.moduels.UrlMapping;
+import com.andreibel.shortlink.moduels.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -11,7 +15,8 @@ import java.util.List;
 /**
  * Repository interface for managing {@link ClickEvent} entities.
  * <p>
- * Provides methods to query click events by URL mapping and date range.
+ * Provides methods to query click events by URL mapping and date range, and to
+ * aggregate them into per-day counts in the database.
  */
 @Repository
 public interface ClickEventRepository extends JpaRepository<ClickEvent, Long> {
@@ -35,4 +40,38 @@ public interface ClickEventRepository extends JpaRepository<ClickEvent, Long> {
      * @return a list of matching {@link ClickEvent} entities
      */
     List<ClickEvent> findByUrlMappingInAndClickDateBetween(List<UrlMapping> shortUrls, LocalDateTime startDate, LocalDateTime endDate);
+
+    /**
+     * Counts the click events of a URL mapping per day within a given date range.
+     * <p>
+     * Grouping happens in the database; no {@link ClickEvent} entity is loaded.
+     *
+     * @param urlMapping the URL mapping to filter by
+     * @param startDate  the start of the date range (inclusive)
+     * @param endDate    the end of the date range (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Query("select new com.andreibel.shortlink.dtos.ClickEventDTO(cast(c.clickDate as LocalDate), count(c)) from ClickEvent c " +
+            "where c.urlMapping = :urlMapping and c.clickDate between :startDate and :endDate " +
+            "group by cast(c.clickDate as LocalDate) order by cast(c.clickDate as LocalDate)")
+    List<ClickEventDTO> countDailyClicks(@Param("urlMapping") UrlMapping urlMapping,
+                                         @Param("startDate") LocalDateTime startDate,
+                                         @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Counts the click events of all URL mappings owned by a user per day within a given date range.
+     * <p>
+     * The user's mappings are found with a join on {@code url_mapping.user_id} instead of an IN list.
+     *
+     * @param user      the owner of the URL mappings
+     * @param startDate the start of the date range (inclusive)
+     * @param endDate   the end of the date range (exclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Query("select new com.andreibel.shortlink.dtos.ClickEventDTO(cast(c.clickDate as LocalDate), count(c)) from ClickEvent c " +
+            "join c.urlMapping u where u.user = :user and c.clickDate >= :startDate and c.clickDate < :endDate " +
+            "group by cast(c.clickDate as LocalDate) order by cast(c.clickDate as LocalDate)")
+    List<ClickEventDTO> countDailyClicksByUser(@Param("user") User user,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
 }
\ No newline at end of file
@@ -1,9 +1,16 @@
 package com.andreibel.shortlink.repository;
 
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.dtos.UrlMappingDTO;
 import com.andreibel.shortlink.moduels.UrlMapping;
 import com.andreibel.shortlink.moduels.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -27,4 +34,90 @@ public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long> {
     List<UrlMapping> findByUser(User createdBy);
 
     UrlMapping findByShortUrlAndUser(String shortUrl, User user);
+
+    /**
+     * Returns the ids of all URL mappings of a user.
+     *
+     * @param user the owner of the mappings
+     * @return the mapping ids
+     */
+    @Query("select u.id from UrlMapping u where u.user = :user")
+    List<Long> findIdsByUser(@Param("user") User user);
+
+    /**
+     * Resolves a short URL to the id and original URL of its mapping without hydrating the entity.
+     *
+     * @param shortUrl the short URL string
+     * @return the resolved target, or null if not found
+     */
+    @Query("select new com.andreibel.shortlink.dtos.ResolvedUrlDTO(u.id, u.originalUrl) from UrlMapping u where u.shortUrl = :shortUrl")
+    ResolvedUrlDTO findResolvedByShortUrl(@Param("shortUrl") String shortUrl);
+
+    /**
+     * Returns URL mappings by id as DTO projections.
+     *
+     * @param ids the mapping ids
+     * @return the mappings that still exist, in no particular order
+     */
+    @Query("select new com.andreibel.shortlink.dtos.UrlMappingDTO(u.id, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, o.username) " +
+            "from UrlMapping u join u.user o where u.id in :ids")
+    List<UrlMappingDTO> findDtosByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns the newest URL mappings of a user as DTO projections.
+     *
+     * @param userId the id of the owner
+     * @param limit  the maximum number of mappings to return
+     * @return mappings ordered by creation date and id, newest first
+     */
+    @Query("select new com.andreibel.shortlink.dtos.UrlMappingDTO(u.id, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, o.username) " +
+            "from UrlMapping u join u.user o where o.id = :userId order by u.createdDate desc, u.id desc")
+    List<UrlMappingDTO> findPageByUserNewestFirst(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Returns the URL mappings of a user created before a keyset position as DTO projections.
+     *
+     * @param userId      the id of the owner
+     * @param createdDate the creation date of the last mapping on the previous page
+     * @param id          the id of the last mapping on the previous page
+     * @param limit       the maximum number of mappings to return
+     * @return mappings ordered by creation date and id, newest first
+     */
+    @Query("select new com.andreibel.shortlink.dtos.UrlMappingDTO(u.id, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, o.username) " +
+            "from UrlMapping u join u.user o where o.id = :userId " +
+            "and (u.createdDate < :createdDate or (u.createdDate = :createdDate and u.id < :id)) " +
+            "order by u.createdDate desc, u.id desc")
+    List<UrlMappingDTO> findPageByUserNewestFirst(@Param("userId") Long userId,
+                                                  @Param("createdDate") LocalDateTime createdDate,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
+
+    /**
+     * Returns the oldest URL mappings of a user as DTO projections.
+     *
+     * @param userId the id of the owner
+     * @param limit  the maximum number of mappings to return
+     * @return mappings ordered by creation date and id, oldest first
+     */
+    @Query("select new com.andreibel.shortlink.dtos.UrlMappingDTO(u.id, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, o.username) " +
+            "from UrlMapping u join u.user o where o.id = :userId order by u.createdDate asc, u.id asc")
+    List<UrlMappingDTO> findPageByUserOldestFirst(@Param("userId") Long userId, Limit limit);
+
+    /**
+     * Returns the URL mappings of a user created after a keyset position as DTO projections.
+     *
+     * @param userId      the id of the owner
+     * @param createdDate the creation date of the last mapping on the previous page
+     * @param id          the id of the last mapping on the previous page
+     * @param limit       the maximum number of mappings to return
+     * @return mappings ordered by creation date and id, oldest first
+     */
+    @Query("select new com.andreibel.shortlink.dtos.UrlMappingDTO(u.id, u.originalUrl, u.shortUrl, u.clickCount, u.createdDate, o.username) " +
+            "from UrlMapping u join u.user o where o.id = :userId " +
+            "and (u.createdDate > :createdDate or (u.createdDate = :createdDate and u.id > :id)) " +
+            "order by u.createdDate asc, u.id asc")
+    List<UrlMappingDTO> findPageByUserOldestFirst(@Param("userId") Long userId,
+                                                  @Param("createdDate") LocalDateTime createdDate,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
 }
\ No newline at end of file
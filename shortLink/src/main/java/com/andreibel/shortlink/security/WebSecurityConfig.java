@@ -2,7 +2,9 @@ package com.andreibel.shortlink.security;
 
 import com.andreibel.shortlink.security.jqt.JwtAuthenticationFilter;
 import com.andreibel.shortlink.service.UserDetailsServiceImpl;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,28 +14,62 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Spring Security configuration class for the application.
  * <p>
  * Configures authentication, password encoding, JWT filter, and HTTP security rules.
+ * <p>
+ * Public redirects ({@code GET /{shortUrl}}) bypass Spring Security entirely unless
+ * {@code shortlink.security.redirect-fast-path} is disabled, in which case they go through
+ * the filter chain as {@code permitAll}.
  */
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class WebSecurityConfig {
+    /**
+     * A single path segment that can be a short URL token.
+     */
+    private static final Pattern REDIRECT_PATH = Pattern.compile("/[A-Za-z0-9]{1,32}");
+    /**
+     * Single-segment paths that are not short URLs.
+     */
+    private static final Set<String> RESERVED_PATHS = Set.of("/api", "/actuator", "/error");
+
+    /**
+     * Matches redirect requests: {@code GET} of a single alphanumeric path segment.
+     */
+    public static final RequestMatcher REDIRECT_REQUEST = request -> {
+        if (!HttpMethod.GET.matches(request.getMethod())) {
+            return false;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return REDIRECT_PATH.matcher(path).matches() && !RESERVED_PATHS.contains(path);
+    };
+
     /**
      * Service for loading user-specific data.
      */
-    private UserDetailsServiceImpl userDetailsService;
+    private final UserDetailsServiceImpl userDetailsService;
+
+    /**
+     * Whether redirect requests bypass the security filter chain.
+     */
+    @Value("${shortlink.security.redirect-fast-path:true}")
+    private boolean redirectFastPath;
 
     /**
      * Bean definition for the JWT authentication filter.
@@ -45,6 +81,39 @@ public class WebSecurityConfig {
         return new JwtAuthenticationFilter();
     }
 
+    /**
+     * Keeps the servlet container from running the JWT filter on its own.
+     * <p>
+     * As a {@code Filter} bean it would otherwise be registered for every request, including
+     * the redirects excluded from security; it only runs inside the security filter chain.
+     *
+     * @param filter the JWT authentication filter
+     * @return a disabled registration for the filter
+     */
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthenticationFilterRegistration(JwtAuthenticationFilter filter) {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    /**
+     * Excludes redirect requests from Spring Security.
+     * <p>
+     * Redirects are public and read no principal, so they skip JWT parsing, security context
+     * and session handling; a stale Authorization header can no longer turn a redirect into a 401.
+     *
+     * @return the customizer ignoring {@link #REDIRECT_REQUEST}
+     */
+    @Bean
+    public WebSecurityCustomizer redirectFastPathCustomizer() {
+        return web -> {
+            if (redirectFastPath) {
+                web.ignoring().requestMatchers(REDIRECT_REQUEST);
+            }
+        };
+    }
+
     /**
      * Bean definition for the password encoder using BCrypt.
      *
@@ -94,8 +163,11 @@ public class WebSecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers("/{shortUrl}").permitAll()
                         .requestMatchers("/api/urls/**").authenticated()
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 );
         http.authenticationProvider(authenticationProvider());
@@ -1,11 +1,13 @@
 package com.andreibel.shortlink.security.jqt;
 
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,6 +22,9 @@ import java.io.IOException;
 /**
  * Filter that authenticates requests based on JWT tokens.
  * Extracts the JWT from the request header, validates it, and sets the authentication in the security context.
+ * <p>
+ * In stateless mode ({@code jwt.stateless}) the principal is built from the token claims alone.
+ * Otherwise, and for tokens issued without a user id, the user is loaded through the user cache.
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -28,6 +33,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtUtils jwtTokenProvider;
     @Autowired
     private UserDetailsService userDetailsService;
+    @Value("${jwt.stateless:true}")
+    private boolean stateless;
 
     /**
      * Filters incoming HTTP requests and authenticates users based on JWT tokens.
@@ -45,9 +52,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Get the JWT token from the request header
             String jwt = jwtTokenProvider.getJwtFromHeader(request);
 
-            if (jwt != null && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromJwtToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (jwt != null) {
+                // Verifies the token once and yields its claims; throws if the token is invalid
+                Claims claims = jwtTokenProvider.parseClaims(jwt);
+                UserDetails userDetails = stateless ? jwtTokenProvider.getUserDetailsFromClaims(claims) : null;
+                if (userDetails == null) {
+                    userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                }
                 if (userDetails != null) {
                     // Set the user details in the SecurityContext
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
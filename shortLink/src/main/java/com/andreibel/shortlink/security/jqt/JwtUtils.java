@@ -1,21 +1,40 @@
 package com.andreibel.shortlink.security.jqt;
 
 
+import com.andreibel.shortlink.service.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
-import java.security.Key;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Utility class for handling JWT operations such as token generation, extraction, and validation.
+ * <p>
+ * The signing key and parser are built once at startup. Verified claims are cached per token
+ * until the token expires, so repeated requests with the same token skip signature
+ * verification and JSON parsing.
  */
 @Component
 public class JwtUtils {
@@ -26,6 +45,60 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
 
+    @Value("${jwt.cache.maximum-size:10000}")
+    private long claimsCacheMaximumSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private SecretKey key;
+    private JwtParser parser;
+    private Cache<String, Claims> verifiedClaims;
+    private Timer verifyValid;
+    private Timer verifyInvalid;
+
+    /**
+     * Builds the signing key, the parser and the cache of verified claims, and registers
+     * the verification timers and cache metrics.
+     */
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parser().verifyWith(key).build();
+        verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaximumSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        if (expiration == null) {
+                            return Long.MAX_VALUE;
+                        }
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwt-claims");
+        verifyValid = Timer.builder("shortlink.jwt.verify")
+                .description("Time to parse and verify a token not found in the claims cache")
+                .tag("result", "valid")
+                .register(meterRegistry);
+        verifyInvalid = Timer.builder("shortlink.jwt.verify")
+                .description("Time to parse and verify a token not found in the claims cache")
+                .tag("result", "invalid")
+                .register(meterRegistry);
+    }
 
     //Authorization -> Bearer <token>
     /**
@@ -44,6 +117,9 @@ public class JwtUtils {
 
     /**
      * Generates a JWT token for the given user details.
+     * <p>
+     * Besides the username and roles, the token carries the user id in the {@code uid}
+     * claim so requests can be authenticated from the token alone.
      *
      * @param userDetails the user details
      * @return the generated JWT token
@@ -55,14 +131,61 @@ public class JwtUtils {
         String roles = userDetails.getAuthorities().stream()
                 .map(authority -> authority.getAuthority())
                 .collect(Collectors.joining(","));
+        Long userId = userDetails instanceof UserDetailsImpl impl ? impl.getId() : null;
         return Jwts.builder()
                 .subject(username)
                 .claim("roles", roles)
+                .claim("uid", userId)
                 .issuedAt(new Date())
                 .expiration(new Date((new Date().getTime() + jwtExpirationMs)))
-                .signWith(key())
+                .signWith(key)
                 .compact();
     }
+
+    /**
+     * Verifies the given JWT token and returns its claims.
+     * <p>
+     * The token is parsed and its signature verified only the first time it is seen;
+     * afterwards the claims are served from the cache until the token expires.
+     *
+     * @param token the JWT token
+     * @return the verified claims
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, expired or its signature is invalid
+     */
+    public Claims parseClaims(String token) {
+        Claims claims = verifiedClaims.getIfPresent(token);
+        if (claims == null) {
+            long start = System.nanoTime();
+            try {
+                claims = parser.parseSignedClaims(token).getPayload();
+            } catch (JwtException | IllegalArgumentException e) {
+                verifyInvalid.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            verifyValid.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            verifiedClaims.put(token, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * Builds the principal described by verified token claims, without loading the user.
+     *
+     * @param claims the claims returned by {@link #parseClaims(String)}
+     * @return the principal, or null if the token predates the {@code uid} claim
+     */
+    public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+        Long userId = claims.get("uid", Long.class);
+        if (userId == null) {
+            return null;
+        }
+        String roles = claims.get("roles", String.class);
+        List<SimpleGrantedAuthority> authorities = roles == null || roles.isEmpty()
+                ? List.of()
+                : Arrays.stream(roles.split(",")).map(SimpleGrantedAuthority::new).toList();
+        return new UserDetailsImpl(userId, claims.getSubject(), null, null, authorities);
+    }
+
     /**
      * Extracts the username from the given JWT token.
      *
@@ -70,12 +193,7 @@ public class JwtUtils {
      * @return the username contained in the token
      */
     public String getUsernameFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith((SecretKey) key())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     /**
@@ -87,16 +205,10 @@ public class JwtUtils {
      */
     public boolean validateToken(String authToken) {
         try {
-            Jwts.parser().verifyWith((SecretKey)key())
-                    .build().parseSignedClaims(authToken);
+            parseClaims(authToken);
             return true; // If parsing is successful, the token is valid
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
-
-
-    private Key key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
-    }
 }
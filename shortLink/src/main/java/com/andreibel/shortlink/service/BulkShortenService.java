@@ -0,0 +1,174 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.dtos.BulkShortenResultDTO;
+import com.andreibel.shortlink.dtos.UrlMappingDTO;
+import com.andreibel.shortlink.moduels.UrlMapping;
+import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.index.ShortCodeFilterService;
+import com.andreibel.shortlink.service.shortcode.ShortCodeGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Service for shortening many URLs in one request.
+ * <p>
+ * Items are validated and shortened in chunks: codes come from the configured
+ * {@link ShortCodeGenerator}, and each chunk is persisted in its own transaction, which
+ * Hibernate sends as JDBC batch inserts. Results are handed to the caller chunk by chunk,
+ * so arbitrarily large requests can be streamed. Invalid items are reported inline and do not affect
+ * the rest of their chunk.
+ */
+@Slf4j
+@Service
+public class BulkShortenService {
+
+    private static final int MAX_URL_LENGTH = 255;
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final UrlMappingService urlMappingService;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final RedirectCacheService redirectCacheService;
+    private final int chunkSize;
+
+    /**
+     * Creates the bulk shorten service.
+     *
+     * @param urlMappingRepository   the repository new mappings are persisted through
+     * @param transactionTemplate    the template each chunk is written in
+     * @param shortCodeGenerator     the generator for new short codes
+     * @param urlMappingService      used to retry a chunk item by item if its batch fails
+     * @param shortCodeFilterService the filter new short codes are added to
+     * @param redirectCacheService   the cache new short codes are announced through
+     * @param chunkSize              the number of items inserted per chunk
+     */
+    public BulkShortenService(UrlMappingRepository urlMappingRepository,
+                              TransactionTemplate transactionTemplate,
+                              ShortCodeGenerator shortCodeGenerator,
+                              UrlMappingService urlMappingService,
+                              ShortCodeFilterService shortCodeFilterService,
+                              RedirectCacheService redirectCacheService,
+                              @Value("${shortlink.bulk.chunk-size:500}") int chunkSize) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.urlMappingService = urlMappingService;
+        this.shortCodeFilterService = shortCodeFilterService;
+        this.redirectCacheService = redirectCacheService;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Shortens every URL produced by the iterator on behalf of a user.
+     *
+     * @param originalUrls the URLs to shorten; a null element is reported as a missing URL
+     * @param user         the user creating the short URLs
+     * @param results      receives one result per item, in request order
+     */
+    public void createShortUrls(Iterator<String> originalUrls, User user, Consumer<BulkShortenResultDTO> results) {
+        List<BulkShortenResultDTO> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        while (originalUrls.hasNext()) {
+            chunk.add(new BulkShortenResultDTO(index++, originalUrls.next(), null, null));
+            if (chunk.size() == chunkSize) {
+                processChunk(chunk, user);
+                chunk.forEach(results);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processChunk(chunk, user);
+            chunk.forEach(results);
+        }
+    }
+
+    private void processChunk(List<BulkShortenResultDTO> chunk, User user) {
+        List<BulkShortenResultDTO> valid = new ArrayList<>(chunk.size());
+        for (BulkShortenResultDTO item : chunk) {
+            String error = validate(item.getOriginalUrl());
+            if (error != null) {
+                item.setError(error);
+            } else {
+                valid.add(item);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<UrlMapping> mappings = new ArrayList<>(valid.size());
+        for (BulkShortenResultDTO item : valid) {
+            UrlMapping urlMapping = new UrlMapping();
+            urlMapping.setOriginalUrl(item.getOriginalUrl());
+            urlMapping.setShortUrl(shortCodeGenerator.nextCode());
+            urlMapping.setUser(user);
+            urlMapping.setCreatedDate(now);
+            mappings.add(urlMapping);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                urlMappingRepository.saveAll(mappings);
+                urlMappingRepository.flush();
+            });
+            for (int i = 0; i < valid.size(); i++) {
+                shortCodeFilterService.add(mappings.get(i).getShortUrl());
+                redirectCacheService.announceCreated(mappings.get(i).getShortUrl());
+                valid.get(i).setUrlMapping(toDto(mappings.get(i), user));
+            }
+        } catch (DataAccessException e) {
+            // A code collided with an existing one; fall back to inserts that retry on conflict.
+            log.debug("Bulk insert of {} url mappings failed, retrying one by one", valid.size(), e);
+            for (BulkShortenResultDTO item : valid) {
+                try {
+                    item.setUrlMapping(urlMappingService.createShortUrl(item.getOriginalUrl(), user));
+                } catch (DataAccessException itemError) {
+                    item.setError("Could not create short URL");
+                }
+            }
+        }
+    }
+
+    private UrlMappingDTO toDto(UrlMapping urlMapping, User user) {
+        UrlMappingDTO dto = new UrlMappingDTO();
+        dto.setId(urlMapping.getId());
+        dto.setOriginalUrl(urlMapping.getOriginalUrl());
+        dto.setShortUrl(urlMapping.getShortUrl());
+        dto.setClickCount(urlMapping.getClickCount());
+        dto.setCreatedDate(urlMapping.getCreatedDate());
+        dto.setUsername(user.getUsername());
+        return dto;
+    }
+
+    private String validate(String originalUrl) {
+        if (originalUrl == null || originalUrl.isBlank()) {
+            return "Missing originalUrl";
+        }
+        if (originalUrl.length() > MAX_URL_LENGTH) {
+            return "URL is longer than " + MAX_URL_LENGTH + " characters";
+        }
+        try {
+            URI uri = new URI(originalUrl);
+            String scheme = uri.getScheme();
+            if (scheme == null || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")) || uri.getHost() == null) {
+                return "URL must be an absolute http or https URL";
+            }
+        } catch (URISyntaxException e) {
+            return "Malformed URL";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.dtos.ClickEventDTO;
+import com.andreibel.shortlink.moduels.UrlMapping;
+import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.repository.ClickDailyRollupRepository;
+import com.andreibel.shortlink.repository.ClickEventRepository;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.archive.ClickArchiveService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Service computing per-day click counts for analytics.
+ * <p>
+ * When the daily rollup is enabled, counts are read from {@code click_daily_rollup}.
+ * Otherwise they are aggregated from {@code click_event} with GROUP BY projections in the
+ * database. Neither path loads {@link com.andreibel.shortlink.moduels.ClickEvent} entities.
+ * Days before the {@link ClickArchiveService} watermark are no longer in {@code click_event};
+ * on the raw path they are counted from the archive and merged in. The rollup already
+ * covers archived days.
+ * <p>
+ * Query time is published as the {@code shortlink.analytics.query} timer, tagged with the
+ * query, the source table and the size of the requested range.
+ */
+@Service
+public class ClickAnalyticsService {
+
+    private final ClickEventRepository clickEventRepository;
+    private final ClickDailyRollupRepository clickDailyRollupRepository;
+    private final UrlMappingRepository urlMappingRepository;
+    private final ClickArchiveService clickArchiveService;
+    private final boolean rollupEnabled;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates the analytics service.
+     *
+     * @param clickEventRepository       the repository for raw click events
+     * @param clickDailyRollupRepository the repository for daily rollups
+     * @param urlMappingRepository       the repository used to find a user's mapping ids for archive lookups
+     * @param clickArchiveService        the archive of click events removed from the database
+     * @param rollupEnabled              whether analytics are served from the daily rollup
+     * @param meterRegistry              the registry to publish query timings to
+     */
+    public ClickAnalyticsService(ClickEventRepository clickEventRepository,
+                                 ClickDailyRollupRepository clickDailyRollupRepository,
+                                 UrlMappingRepository urlMappingRepository,
+                                 ClickArchiveService clickArchiveService,
+                                 @Value("${shortlink.analytics.rollup.enabled:true}") boolean rollupEnabled,
+                                 MeterRegistry meterRegistry) {
+        this.clickEventRepository = clickEventRepository;
+        this.clickDailyRollupRepository = clickDailyRollupRepository;
+        this.urlMappingRepository = urlMappingRepository;
+        this.clickArchiveService = clickArchiveService;
+        this.rollupEnabled = rollupEnabled;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Returns the daily click counts of a URL mapping within a time range.
+     * <p>
+     * The rollup has day granularity, so when it is used the range is widened to whole days.
+     *
+     * @param urlMapping the URL mapping
+     * @param start      the start datetime (inclusive)
+     * @param end        the end datetime (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Transactional(readOnly = true)
+    public List<ClickEventDTO> getDailyClicks(UrlMapping urlMapping, LocalDateTime start, LocalDateTime end) {
+        long days = ChronoUnit.DAYS.between(start.toLocalDate(), end.toLocalDate()) + 1;
+        if (rollupEnabled) {
+            return timed("mapping", days, () ->
+                    clickDailyRollupRepository.findDailyClicks(urlMapping, start.toLocalDate(), end.toLocalDate()));
+        }
+        LocalDate watermark = clickArchiveService.getWatermark();
+        if (watermark == null || !start.toLocalDate().isBefore(watermark)) {
+            return timed("mapping", days, () -> clickEventRepository.countDailyClicks(urlMapping, start, end));
+        }
+        return timed("mapping", days, () -> merge(
+                clickArchiveService.countDailyClicks(List.of(urlMapping.getId()), start.toLocalDate(), end.toLocalDate()),
+                watermark,
+                () -> clickEventRepository.countDailyClicks(urlMapping, watermark.atStartOfDay(), end)));
+    }
+
+    /**
+     * Returns the daily click counts summed over all URL mappings of a user within a range of days.
+     *
+     * @param user  the owner of the URL mappings
+     * @param start the first day (inclusive)
+     * @param end   the last day (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    @Transactional(readOnly = true)
+    public List<ClickEventDTO> getDailyClicksByUser(User user, LocalDate start, LocalDate end) {
+        long days = ChronoUnit.DAYS.between(start, end) + 1;
+        if (rollupEnabled) {
+            return timed("user", days, () -> clickDailyRollupRepository.findDailyClicksByUser(user, start, end));
+        }
+        LocalDate watermark = clickArchiveService.getWatermark();
+        if (watermark == null || !start.isBefore(watermark)) {
+            return timed("user", days, () ->
+                    clickEventRepository.countDailyClicksByUser(user, start.atStartOfDay(), end.plusDays(1).atStartOfDay()));
+        }
+        return timed("user", days, () -> merge(
+                clickArchiveService.countDailyClicks(urlMappingRepository.findIdsByUser(user), start, end),
+                watermark,
+                () -> clickEventRepository.countDailyClicksByUser(user, watermark.atStartOfDay(), end.plusDays(1).atStartOfDay())));
+    }
+
+    /**
+     * Joins archived days before the watermark with live days from it on, both ordered by day.
+     */
+    private static List<ClickEventDTO> merge(List<ClickEventDTO> archived, LocalDate watermark,
+                                             Supplier<List<ClickEventDTO>> live) {
+        List<ClickEventDTO> days = new ArrayList<>();
+        for (ClickEventDTO day : archived) {
+            if (day.getClickDate().isBefore(watermark)) {
+                days.add(day);
+            }
+        }
+        days.addAll(live.get());
+        return days;
+    }
+
+    private List<ClickEventDTO> timed(String query, long days, Supplier<List<ClickEventDTO>> lookup) {
+        return Timer.builder("shortlink.analytics.query")
+                .description("Time to compute daily click counts")
+                .tag("query", query)
+                .tag("source", rollupEnabled ? "rollup" : "raw")
+                .tag("range", rangeBucket(days))
+                .register(meterRegistry)
+                .record(lookup);
+    }
+
+    /**
+     * Buckets a range length into a small, fixed set of tag values to keep cardinality bounded.
+     */
+    private static String rangeBucket(long days) {
+        if (days <= 1) {
+            return "1d";
+        }
+        if (days <= 7) {
+            return "7d";
+        }
+        if (days <= 31) {
+            return "31d";
+        }
+        if (days <= 92) {
+            return "92d";
+        }
+        if (days <= 366) {
+            return "366d";
+        }
+        return "longer";
+    }
+}
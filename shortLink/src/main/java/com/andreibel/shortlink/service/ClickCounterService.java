@@ -0,0 +1,168 @@
+package com.andreibel.shortlink.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention-free click counters for URL mappings.
+ * <p>
+ * Each redirect increments a striped {@link LongAdder} for its mapping instead of updating
+ * the {@code url_mapping} row. A scheduled flush merges the accumulated counts into the
+ * database with one {@code click_count = click_count + ?} update per mapping.
+ * <p>
+ * Counters are never reset: each counter remembers how much of its total has already been
+ * flushed, so increments racing with a flush are simply picked up by the next one and no
+ * click is lost or counted twice. The updates of one flush run in a single transaction, so a
+ * failed flush leaves nothing applied and is retried as a whole.
+ * <p>
+ * Counters idle for a whole flush are retired: the flusher marks the counter retired, then
+ * checks it is still idle, while an increment adds first, then checks the mark and takes its
+ * click back if the counter was retired. One of the two always sees the other, so a click
+ * either keeps the counter alive or moves to a fresh counter; none lands on a removed one.
+ */
+@Slf4j
+@Service
+public class ClickCounterService {
+
+    private static final String INCREMENT_CLICK_COUNT =
+            "update url_mapping set click_count = click_count + ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the counter service.
+     *
+     * @param jdbcTemplate        the JDBC template used to merge counts into the database
+     * @param transactionTemplate the template each flush is written in
+     */
+    public ClickCounterService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Counts one click for a mapping.
+     *
+     * @param urlMappingId the id of the clicked mapping
+     */
+    public void increment(Long urlMappingId) {
+        while (true) {
+            Counter counter = counters.get(urlMappingId);
+            if (counter == null) {
+                counter = counters.computeIfAbsent(urlMappingId, Counter::new);
+            }
+            counter.clicks.increment();
+            if (!counter.retired) {
+                return;
+            }
+            // Retired concurrently; the flusher may not have seen this click, so count it on a fresh counter.
+            counter.clicks.decrement();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the number of clicks counted in memory but not yet merged into the database.
+     *
+     * @param urlMappingId the id of the mapping
+     * @return the pending click count
+     */
+    public long getPendingCount(Long urlMappingId) {
+        Counter counter = counters.get(urlMappingId);
+        return counter == null ? 0 : counter.clicks.sum() - counter.flushed;
+    }
+
+    /**
+     * Merges all pending counts into {@code url_mapping.click_count}.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.clicks.counter-flush-interval:PT5S}")
+    public synchronized void flush() {
+        List<Counter> flushing = new ArrayList<>();
+        for (Counter counter : counters.values()) {
+            if (counter.clicks.sum() == counter.flushed && retire(counter)) {
+                continue;
+            }
+            flushing.add(counter);
+        }
+
+        List<Counter> dirty = new ArrayList<>(flushing.size());
+        List<Long> totals = new ArrayList<>(flushing.size());
+        List<Object[]> args = new ArrayList<>(flushing.size());
+        for (Counter counter : flushing) {
+            long total = counter.clicks.sum();
+            long delta = total - counter.flushed;
+            if (delta > 0) {
+                dirty.add(counter);
+                totals.add(total);
+                args.add(new Object[]{delta, counter.urlMappingId});
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INCREMENT_CLICK_COUNT, args));
+        } catch (DataAccessException | TransactionException e) {
+            // Rolled back and nothing was marked as flushed, so the same deltas are retried next cycle.
+            log.error("Failed to flush click counts for {} url mappings", args.size(), e);
+            return;
+        }
+        for (int i = 0; i < dirty.size(); i++) {
+            dirty.get(i).flushed = totals.get(i);
+        }
+    }
+
+    /**
+     * Removes an idle counter unless a click arrives while it is being retired.
+     *
+     * @return true if the counter was removed
+     */
+    private boolean retire(Counter counter) {
+        counter.retired = true;
+        if (counter.clicks.sum() != counter.flushed) {
+            counter.retired = false;
+            return false;
+        }
+        counters.remove(counter.urlMappingId, counter);
+        return true;
+    }
+
+    /**
+     * Flushes pending counts before the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static final class Counter {
+        private final Long urlMappingId;
+        private final LongAdder clicks = new LongAdder();
+        /**
+         * Portion of {@link #clicks} already merged into the database; only touched by the flusher.
+         */
+        private volatile long flushed;
+        /**
+         * Set while the flusher retires the counter, and for good once it is removed.
+         */
+        private volatile boolean retired;
+
+        private Counter(Long urlMappingId) {
+            this.urlMappingId = urlMappingId;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.andreibel.shortlink.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Streams the raw click events of a URL mapping as NDJSON or CSV.
+ * <p>
+ * Events are read in windows of {@code shortlink.export.window-size} rows, walked in
+ * (click_date, id) order with a keyset, so each window is a short read-only transaction over
+ * the (url_mapping_id, click_date) index. Within a window rows come from a forward-only
+ * cursor with a bounded fetch size and are written to the response as they arrive. Memory
+ * use is therefore constant regardless of the number of clicks, and no transaction stays
+ * open for the length of the download. Set {@code shortlink.export.replica.url} to read from
+ * a replica instead of the primary.
+ * <p>
+ * Only events still in {@code click_event} are exported; archived and compacted days are not.
+ */
+@Slf4j
+@Service
+public class ClickExportService {
+
+    /**
+     * Output format of an export.
+     */
+    public enum Format {
+        /**
+         * One JSON object per line: {@code {"id":1,"clickDate":"2025-01-01T12:00:00"}}.
+         */
+        NDJSON,
+        /**
+         * A {@code id,click_date} header followed by one row per event.
+         */
+        CSV
+    }
+
+    private static final String SELECT_WINDOW =
+            "select id, click_date from click_event " +
+            "where url_mapping_id = ? and click_date >= ? and click_date < ? " +
+            "and (click_date > ? or id > ?) " +
+            "order by click_date, id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final HikariDataSource replica;
+    private final int windowSize;
+    private final int fetchSize;
+
+    /**
+     * Creates the export service.
+     *
+     * @param jdbcTemplate       the JDBC template of the primary database
+     * @param transactionManager the transaction manager of the primary database
+     * @param replicaUrl         the JDBC URL of a replica to read from, or empty to read from the primary
+     * @param replicaUsername    the replica user name
+     * @param replicaPassword    the replica password
+     * @param windowSize         the number of rows read per transaction
+     * @param fetchSize          the number of rows fetched per round trip
+     */
+    public ClickExportService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${shortlink.export.replica.url:}") String replicaUrl,
+                              @Value("${shortlink.export.replica.username:}") String replicaUsername,
+                              @Value("${shortlink.export.replica.password:}") String replicaPassword,
+                              @Value("${shortlink.export.window-size:50000}") int windowSize,
+                              @Value("${shortlink.export.fetch-size:1000}") int fetchSize) {
+        this.windowSize = windowSize;
+        this.fetchSize = fetchSize;
+        if (replicaUrl.isBlank()) {
+            this.replica = null;
+            this.jdbcTemplate = jdbcTemplate;
+            this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        } else {
+            this.replica = new HikariDataSource();
+            this.replica.setPoolName("export-replica");
+            this.replica.setJdbcUrl(replicaUrl);
+            this.replica.setUsername(replicaUsername);
+            this.replica.setPassword(replicaPassword);
+            this.replica.setReadOnly(true);
+            this.replica.setMaximumPoolSize(4);
+            this.jdbcTemplate = new JdbcTemplate(replica);
+            this.readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(replica));
+        }
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Closes the replica connection pool, if one was configured.
+     */
+    @PreDestroy
+    public void stop() {
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    /**
+     * Writes the click events of a URL mapping within a time range to a stream.
+     *
+     * @param urlMappingId the id of the URL mapping
+     * @param start        the start datetime (inclusive)
+     * @param end          the end datetime (exclusive)
+     * @param format       the output format
+     * @param out          the stream to write to; it is flushed but not closed
+     * @return the number of events written
+     * @throws IOException if writing to the stream fails
+     */
+    public long export(Long urlMappingId, LocalDateTime start, LocalDateTime end, Format format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writer.write("id,click_date\n");
+        }
+        Timestamp until = Timestamp.valueOf(end);
+        Timestamp lastDate = Timestamp.valueOf(start);
+        long lastId = Long.MIN_VALUE;
+        long total = 0;
+        try {
+            while (true) {
+                Window window = readWindow(urlMappingId, lastDate, lastId, until, format, writer);
+                total += window.rows;
+                writer.flush();
+                if (window.rows < windowSize) {
+                    return total;
+                }
+                lastDate = window.lastDate;
+                lastId = window.lastId;
+            }
+        } catch (UncheckedIOException e) {
+            // Most likely the client went away; stop reading.
+            log.debug("Click export of url mapping {} aborted after {} events", urlMappingId, total);
+            throw e.getCause();
+        }
+    }
+
+    private Window readWindow(Long urlMappingId, Timestamp lastDate, long lastId, Timestamp until,
+                              Format format, Writer writer) {
+        Window window = new Window();
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_WINDOW);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, urlMappingId);
+            statement.setTimestamp(2, lastDate);
+            statement.setTimestamp(3, until);
+            statement.setTimestamp(4, lastDate);
+            statement.setLong(5, lastId);
+            statement.setInt(6, windowSize);
+            return statement;
+        }, rs -> {
+            window.lastId = rs.getLong(1);
+            window.lastDate = rs.getTimestamp(2);
+            window.rows++;
+            try {
+                write(window.lastId, window.lastDate.toLocalDateTime(), format, writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        return window;
+    }
+
+    private static void write(long id, LocalDateTime clickDate, Format format, Writer writer) throws IOException {
+        if (format == Format.CSV) {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writer.write(clickDate.toString());
+        } else {
+            // Values are numbers and ISO timestamps, so nothing needs escaping.
+            writer.write("{\"id\":");
+            writer.write(Long.toString(id));
+            writer.write(",\"clickDate\":\"");
+            writer.write(clickDate.toString());
+            writer.write("\"}");
+        }
+        writer.write('\n');
+    }
+
+    private static final class Window {
+        private long rows;
+        private long lastId;
+        private Timestamp lastDate;
+    }
+}
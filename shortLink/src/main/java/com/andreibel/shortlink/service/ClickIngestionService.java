@@ -0,0 +1,413 @@
+package com.andreibel.shortlink.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import com.andreibel.shortlink.moduels.ClickEvent;
+import com.andreibel.shortlink.repository.ClickEventRepository;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.visitor.VisitorSketchService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous, batched writer for click events.
+ * <p>
+ * Redirects hand their clicks to a bounded in-memory queue and return immediately.
+ * A single background thread drains the queue and persists the events to {@code click_event}
+ * as JDBC batch inserts (ids come from a pooled sequence, so Hibernate batches them), flushing
+ * whenever a batch fills up or the flush interval elapses.
+ * When the queue is full the configured {@link OverflowPolicy} decides whether the redirect
+ * waits briefly or the click is dropped. On shutdown the writer thread itself writes the clicks
+ * still queued, so no batch is ever written from two threads at once.
+ * <p>
+ * A batch rejected by a constraint, most likely because a mapping was deleted while its clicks
+ * were queued, is retried click by click and the offending clicks are skipped. Any other failure,
+ * such as the database being unreachable, puts the batch back in the queue and the writer waits
+ * one flush interval before carrying on; a click that fails {@value #MAX_ATTEMPTS} times is
+ * dropped. Both are logged once per batch and counted in {@code shortlink.clicks.write.failures}.
+ * <p>
+ * Unless disabled, each batch is added to the daily rollup by {@link ClickRollupService}
+ * in the same transaction as the event inserts. The visitors of each batch are added to the
+ * unique-visitor sketches of {@link VisitorSketchService}.
+ */
+@Slf4j
+@Service
+public class ClickIngestionService {
+
+    /**
+     * What to do with a click when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the click immediately; the redirect is never delayed.
+         */
+        DROP,
+        /**
+         * Wait up to the offer timeout for space, then drop the click.
+         */
+        BLOCK
+    }
+
+    /**
+     * A click waiting to be written.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PendingClick {
+        private final Long urlMappingId;
+        private final LocalDateTime clickDate;
+        /**
+         * Hash of the visitor, or 0 if unknown.
+         */
+        private final long visitorHash;
+        /**
+         * Number of failed attempts to write the click so far.
+         */
+        private final int attempts;
+
+        public PendingClick(Long urlMappingId, LocalDateTime clickDate, long visitorHash) {
+            this(urlMappingId, clickDate, visitorHash, 0);
+        }
+    }
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final ClickEventRepository clickEventRepository;
+    private final UrlMappingRepository urlMappingRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ClickRollupService clickRollupService;
+    private final VisitorSketchService visitorSketchService;
+    private final boolean rollupEnabled;
+    private final BlockingQueue<PendingClick> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration offerTimeout;
+    private final Duration shutdownTimeout;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter requeued;
+    private final Counter skipped;
+    private final Counter abandoned;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Creates the ingestion service.
+     *
+     * @param clickEventRepository the repository click events are persisted through
+     * @param urlMappingRepository used to reference clicked mappings without loading them
+     * @param transactionTemplate  the template each batch is written in
+     * @param clickRollupService   the service maintaining the daily rollup
+     * @param visitorSketchService the service maintaining the daily visitor sketches
+     * @param rollupEnabled        whether ingested clicks are added to the daily rollup
+     * @param queueCapacity        the maximum number of clicks buffered in memory
+     * @param batchSize            the maximum number of clicks written per JDBC batch
+     * @param flushInterval        the maximum time a click waits in the queue before being flushed
+     * @param overflowPolicy       what to do when the queue is full
+     * @param offerTimeout         how long {@link OverflowPolicy#BLOCK} waits for space
+     * @param shutdownTimeout      how long shutdown waits for the writer to write the queued clicks
+     * @param meterRegistry        the registry to publish queue and flush metrics to
+     */
+    public ClickIngestionService(ClickEventRepository clickEventRepository,
+                                 UrlMappingRepository urlMappingRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 ClickRollupService clickRollupService,
+                                 VisitorSketchService visitorSketchService,
+                                 @Value("${shortlink.analytics.rollup.enabled:true}") boolean rollupEnabled,
+                                 @Value("${shortlink.clicks.queue-capacity:100000}") int queueCapacity,
+                                 @Value("${shortlink.clicks.batch-size:500}") int batchSize,
+                                 @Value("${shortlink.clicks.flush-interval:PT1S}") Duration flushInterval,
+                                 @Value("${shortlink.clicks.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                                 @Value("${shortlink.clicks.offer-timeout:PT0.05S}") Duration offerTimeout,
+                                 @Value("${shortlink.clicks.shutdown-timeout:PT30S}") Duration shutdownTimeout,
+                                 MeterRegistry meterRegistry) {
+        this.clickEventRepository = clickEventRepository;
+        this.urlMappingRepository = urlMappingRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clickRollupService = clickRollupService;
+        this.visitorSketchService = visitorSketchService;
+        this.rollupEnabled = rollupEnabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        Gauge.builder("shortlink.clicks.queue.depth", queue, BlockingQueue::size)
+                .description("Clicks waiting to be written")
+                .register(meterRegistry);
+        FunctionCounter.builder("shortlink.clicks.dropped", dropped, AtomicLong::get)
+                .description("Clicks dropped because the ingestion queue was full or they could not be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("shortlink.clicks.flush")
+                .description("Time to write one batch of click events")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("shortlink.clicks.flush.batch.size")
+                .description("Click events per written batch")
+                .register(meterRegistry);
+        this.requeued = failures(meterRegistry, "requeued");
+        this.skipped = failures(meterRegistry, "skipped");
+        this.abandoned = failures(meterRegistry, "dropped");
+    }
+
+    /**
+     * Starts the background writer thread.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "click-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer once it has written every click still in the queue.
+     * <p>
+     * If the writer does not finish within the shutdown timeout it is interrupted, and the
+     * clicks it did not get to, or could not write, are counted as dropped.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writer.join(shutdownTimeout.toMillis());
+            if (writer.isAlive()) {
+                log.warn("Click writer did not finish within {}; interrupting it with {} clicks queued",
+                        shutdownTimeout, queue.size());
+                writer.interrupt();
+                writer.join(flushInterval.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writer.isAlive()) {
+            // Nothing else writes any more; pick up clicks recorded after the writer's last drain.
+            drainQueue();
+        }
+        // Whatever is left was either never reached or put back by a failed write.
+        dropped.addAndGet(queue.size());
+        queue.clear();
+        if (dropped.get() > 0) {
+            log.warn("Dropped {} click events that could not be queued or written", dropped.get());
+        }
+    }
+
+    /**
+     * Queues a click of an unknown visitor for asynchronous persistence.
+     *
+     * @param urlMappingId the id of the clicked mapping
+     * @param clickDate    when the click happened
+     * @return true if the click was queued, false if it was dropped
+     */
+    public boolean record(Long urlMappingId, LocalDateTime clickDate) {
+        return record(urlMappingId, clickDate, 0);
+    }
+
+    /**
+     * Queues a click for asynchronous persistence.
+     *
+     * @param urlMappingId the id of the clicked mapping
+     * @param clickDate    when the click happened
+     * @param visitorHash  the hash of the visitor from {@link VisitorSketchService#visitorHash(String, String)}, or 0 if unknown
+     * @return true if the click was queued, false if it was dropped
+     */
+    public boolean record(Long urlMappingId, LocalDateTime clickDate, long visitorHash) {
+        PendingClick click = new PendingClick(urlMappingId, clickDate, visitorHash);
+        boolean queued = queue.offer(click);
+        if (!queued && overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queued = queue.offer(click, offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued && dropped.incrementAndGet() % 10_000 == 1) {
+            log.warn("Click ingestion queue is full, dropping clicks ({} so far)", dropped.get());
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of clicks waiting to be written.
+     *
+     * @return the current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of clicks dropped because the queue was full or they could not be written.
+     *
+     * @return the dropped click count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void runWriter() {
+        List<PendingClick> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                PendingClick first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingClick next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                boolean written = write(batch);
+                batch.clear();
+                if (!written) {
+                    // Give the database a moment instead of retrying the requeued clicks right away.
+                    TimeUnit.NANOSECONDS.sleep(flushInterval.toNanos());
+                }
+            }
+            drainQueue();
+        } catch (InterruptedException e) {
+            // stop() gave up waiting; write what was taken from the queue and leave the rest.
+            write(batch);
+        }
+    }
+
+    /**
+     * Writes the clicks queued when the drain starts; clicks put back by a failed batch are left in the queue.
+     */
+    private void drainQueue() {
+        List<PendingClick> batch = new ArrayList<>(batchSize);
+        int left = queue.size();
+        while (left > 0 && queue.drainTo(batch, Math.min(batchSize, left)) > 0) {
+            left -= batch.size();
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch in one transaction.
+     *
+     * @return false if the batch was put back in the queue because the write failed
+     */
+    private boolean write(List<PendingClick> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        batchSizes.record(batch.size());
+        // Adding a visitor to a sketch twice does not change it, so requeued clicks may be added again.
+        visitorSketchService.addClicks(batch);
+        Timer.Sample sample = Timer.start();
+        try {
+            writeInTransaction(batch);
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Most likely a mapping was deleted while its clicks were queued; keep the rest.
+            log.info("Batch of {} click events violated a constraint, retrying one by one", batch.size());
+            return writeIndividually(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} click events, retrying after {}", batch.size(), flushInterval, e);
+            requeue(batch);
+            return false;
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    private boolean writeIndividually(List<PendingClick> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingClick click = batch.get(i);
+            try {
+                writeInTransaction(List.of(click));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Skipping click event for url mapping {}", click.getUrlMappingId(), e);
+                skipped.increment();
+            } catch (RuntimeException e) {
+                log.warn("Failed to write {} click events, retrying after {}", batch.size() - i, flushInterval, e);
+                requeue(batch.subList(i, batch.size()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeInTransaction(List<PendingClick> clicks) {
+        transactionTemplate.executeWithoutResult(status -> {
+            persist(clicks);
+            if (rollupEnabled) {
+                clickRollupService.addClicks(clicks);
+            }
+        });
+    }
+
+    private void requeue(List<PendingClick> batch) {
+        int lost = 0;
+        for (PendingClick click : batch) {
+            PendingClick retry = new PendingClick(click.getUrlMappingId(), click.getClickDate(),
+                    click.getVisitorHash(), click.getAttempts() + 1);
+            if (retry.getAttempts() < MAX_ATTEMPTS && queue.offer(retry)) {
+                requeued.increment();
+            } else {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            dropped.addAndGet(lost);
+            abandoned.increment(lost);
+            log.error("Dropped {} click events that could not be written", lost);
+        }
+    }
+
+    private static Counter failures(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("shortlink.clicks.write.failures")
+                .description("Clicks whose batch failed to write, by what happened to them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void persist(List<PendingClick> clicks) {
+        List<ClickEvent> events = new ArrayList<>(clicks.size());
+        for (PendingClick click : clicks) {
+            ClickEvent event = new ClickEvent();
+            event.setUrlMapping(urlMappingRepository.getReferenceById(click.getUrlMappingId()));
+            event.setClickDate(click.getClickDate());
+            events.add(event);
+        }
+        clickEventRepository.saveAll(events);
+        // Flush inside the transaction so a constraint violation surfaces here, not at commit.
+        clickEventRepository.flush();
+    }
+}
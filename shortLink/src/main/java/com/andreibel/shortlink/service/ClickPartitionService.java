@@ -0,0 +1,161 @@
+package com.andreibel.shortlink.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of {@code click_event} on PostgreSQL.
+ * <p>
+ * Partitioning is opt-in: {@code db/migration/postgresql/partition-click-event.sql} converts
+ * the table into one partitioned by range of {@code click_date}. Once it is, this service
+ * creates the partition of the current month and {@code shortlink.clicks.partitions.months-ahead}
+ * months ahead at startup and every day, so inserts never land in the default partition.
+ * Partitions are named {@code click_event_pYYYYMM}; tables named otherwise are left alone.
+ * On other databases, or when the table is not partitioned, every method is a no-op and
+ * {@link ClickRetentionService} deletes expired events in chunks instead.
+ */
+@Slf4j
+@Service
+public class ClickPartitionService {
+
+    private static final String IS_PARTITIONED =
+            "select count(*) from pg_partitioned_table p join pg_class c on c.oid = p.partrelid " +
+            "where c.relname = 'click_event' and c.relnamespace = to_regnamespace(current_schema())";
+    private static final String LIST_PARTITIONS =
+            "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid " +
+            "join pg_class p on p.oid = i.inhparent " +
+            "where p.relname = 'click_event' and p.relnamespace = to_regnamespace(current_schema())";
+    private static final String CREATE_PARTITION =
+            "create table if not exists %s partition of click_event for values from ('%s') to ('%s')";
+    private static final String DETACH_PARTITION = "alter table click_event detach partition %s";
+    private static final String DROP_TABLE = "drop table %s";
+    private static final String RENAME_TABLE = "alter table %s rename to %s";
+    private static final Pattern PARTITION_NAME = Pattern.compile("click_event_p(\\d{4})(\\d{2})");
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+
+    private volatile boolean partitioned;
+
+    /**
+     * Creates the partition service.
+     *
+     * @param jdbcTemplate the JDBC template used to inspect and alter the schema
+     * @param monthsAhead  how many months after the current one get a partition in advance
+     */
+    public ClickPartitionService(JdbcTemplate jdbcTemplate,
+                                 @Value("${shortlink.clicks.partitions.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * Detects whether {@code click_event} is partitioned and creates upcoming partitions.
+     */
+    @PostConstruct
+    public void start() {
+        try {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equals(database)) {
+                return;
+            }
+            Long count = jdbcTemplate.queryForObject(IS_PARTITIONED, Long.class);
+            partitioned = count != null && count > 0;
+        } catch (DataAccessException e) {
+            log.warn("Could not determine whether click_event is partitioned", e);
+        }
+        if (partitioned) {
+            ensurePartitions();
+        }
+    }
+
+    /**
+     * Returns whether {@code click_event} is a partitioned PostgreSQL table.
+     *
+     * @return true if partitions are maintained by this service
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Creates the partitions of the current month and the configured number of months ahead.
+     */
+    @Scheduled(cron = "${shortlink.clicks.partitions.cron:0 0 2 * * *}")
+    public void ensurePartitions() {
+        if (!partitioned) {
+            return;
+        }
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            try {
+                jdbcTemplate.execute(CREATE_PARTITION.formatted(
+                        partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+            } catch (DataAccessException e) {
+                // Typically rows for this month already sit in the default partition.
+                log.error("Failed to create click_event partition for {}", month, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the months of the partitions that only hold clicks before a cutoff day, oldest first.
+     *
+     * @param cutoff the first day that must be kept
+     * @return the months whose partitions may be dropped
+     */
+    public List<YearMonth> findPartitionsBefore(LocalDate cutoff) {
+        List<YearMonth> months = new ArrayList<>();
+        if (!partitioned) {
+            return months;
+        }
+        for (String name : jdbcTemplate.queryForList(LIST_PARTITIONS, String.class)) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                    months.add(month);
+                }
+            }
+        }
+        months.sort(null);
+        return months;
+    }
+
+    /**
+     * Detaches the partition of a month and either drops it or keeps it as
+     * {@code click_event_archive_pYYYYMM}.
+     *
+     * @param month   the month of the partition
+     * @param archive whether to keep the detached table
+     */
+    public void removePartition(YearMonth month, boolean archive) {
+        String name = partitionName(month);
+        jdbcTemplate.execute(DETACH_PARTITION.formatted(name));
+        if (archive) {
+            jdbcTemplate.execute(RENAME_TABLE.formatted(name, "click_event_archive_p" + month.format(NAME_FORMAT)));
+        } else {
+            jdbcTemplate.execute(DROP_TABLE.formatted(name));
+        }
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "click_event_p" + month.format(NAME_FORMAT);
+    }
+}
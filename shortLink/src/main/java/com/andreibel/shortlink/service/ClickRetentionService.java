@@ -0,0 +1,142 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.service.archive.ClickArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Removes raw click events older than {@code shortlink.clicks.retention.days} after compacting
+ * them into {@code click_daily_rollup} and, when enabled, exporting them to the
+ * {@link ClickArchiveService}.
+ * <p>
+ * Analytics keep working for removed days because they are served from the rollup or merged
+ * in from the archive, so the job refuses to run while neither is enabled. An export that
+ * fails aborts the run before anything is removed. When {@code click_event} is partitioned
+ * (see {@link ClickPartitionService}), whole monthly partitions are detached once every day
+ * in them has expired, and either dropped or kept as archive tables; days of the current
+ * partition are left until the month expires. Otherwise expired events are deleted in
+ * id-bounded chunks, each in its own short transaction, to avoid long locks and huge undo logs.
+ * <p>
+ * Disabled by default. Enable it on one instance only; concurrent runs are safe but redundant.
+ */
+@Slf4j
+@Service
+public class ClickRetentionService {
+
+    private static final String EXPIRED_ID_RANGE =
+            "select min(id), max(id), min(click_date) from click_event where click_date < ?";
+    private static final String DELETE_EXPIRED =
+            "delete from click_event where id >= ? and id < ? and click_date < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClickRollupService clickRollupService;
+    private final ClickPartitionService clickPartitionService;
+    private final ClickArchiveService clickArchiveService;
+    private final boolean enabled;
+    private final boolean rollupEnabled;
+    private final int retentionDays;
+    private final boolean archive;
+    private final int deleteBatchSize;
+
+    /**
+     * Creates the retention service.
+     *
+     * @param jdbcTemplate          the JDBC template used to delete expired events
+     * @param transactionTemplate   the template compaction and each partition removal run in
+     * @param clickRollupService    the service compacting events into the rollup
+     * @param clickPartitionService the service maintaining click_event partitions
+     * @param clickArchiveService   the archive expiring events are exported to
+     * @param enabled               whether expired events are removed
+     * @param rollupEnabled         whether analytics are served from the daily rollup
+     * @param retentionDays         how many days of raw events are kept
+     * @param archive               whether expired partitions are kept as archive tables instead of dropped
+     * @param deleteBatchSize       the id range deleted per statement on unpartitioned tables
+     */
+    public ClickRetentionService(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 ClickRollupService clickRollupService,
+                                 ClickPartitionService clickPartitionService,
+                                 ClickArchiveService clickArchiveService,
+                                 @Value("${shortlink.clicks.retention.enabled:false}") boolean enabled,
+                                 @Value("${shortlink.analytics.rollup.enabled:true}") boolean rollupEnabled,
+                                 @Value("${shortlink.clicks.retention.days:400}") int retentionDays,
+                                 @Value("${shortlink.clicks.retention.archive:false}") boolean archive,
+                                 @Value("${shortlink.clicks.retention.delete-batch-size:10000}") int deleteBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.clickRollupService = clickRollupService;
+        this.clickPartitionService = clickPartitionService;
+        this.clickArchiveService = clickArchiveService;
+        this.enabled = enabled;
+        this.rollupEnabled = rollupEnabled;
+        this.retentionDays = retentionDays;
+        this.archive = archive;
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    /**
+     * Compacts and removes click events older than the retention period.
+     */
+    @Scheduled(cron = "${shortlink.clicks.retention.cron:0 30 3 * * *}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        if (!rollupEnabled && !clickArchiveService.isEnabled()) {
+            log.warn("Click retention skipped: raw events are only removed while the rollup or the archive is enabled");
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        if (clickPartitionService.isPartitioned()) {
+            removePartitions(cutoff);
+        } else {
+            deleteInChunks(cutoff);
+        }
+    }
+
+    private void removePartitions(LocalDate cutoff) {
+        for (YearMonth month : clickPartitionService.findPartitionsBefore(cutoff)) {
+            clickArchiveService.export(month.atDay(1), month.plusMonths(1).atDay(1));
+            transactionTemplate.executeWithoutResult(status -> {
+                long counts = compact(month.atDay(1), month.plusMonths(1).atDay(1));
+                clickPartitionService.removePartition(month, archive);
+                log.info("{} click_event partition {} after compacting {} daily counts",
+                        archive ? "Archived" : "Dropped", month, counts);
+            });
+        }
+    }
+
+    private void deleteInChunks(LocalDate cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff.atStartOfDay());
+        Object[] range = jdbcTemplate.queryForObject(EXPIRED_ID_RANGE,
+                (rs, rowNum) -> new Object[]{rs.getObject(1, Long.class), rs.getObject(2, Long.class), rs.getTimestamp(3)},
+                before);
+        if (range == null || range[0] == null) {
+            return;
+        }
+        LocalDate oldest = ((Timestamp) range[2]).toLocalDateTime().toLocalDate();
+        clickArchiveService.export(oldest, cutoff);
+        long counts = transactionTemplate.execute(status -> compact(oldest, cutoff));
+
+        long deleted = 0;
+        long maxId = (Long) range[1];
+        for (long from = (Long) range[0]; from <= maxId; from += deleteBatchSize) {
+            deleted += jdbcTemplate.update(DELETE_EXPIRED, from, from + deleteBatchSize, before);
+        }
+        log.info("Deleted {} click events before {} after compacting {} daily counts since {}",
+                deleted, cutoff, counts, oldest);
+    }
+
+    private long compact(LocalDate from, LocalDate to) {
+        return rollupEnabled ? clickRollupService.compact(from, to) : 0;
+    }
+}
@@ -0,0 +1,144 @@
+package com.andreibel.shortlink.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the {@code click_daily_rollup} table.
+ * <p>
+ * Ingested clicks are aggregated per URL mapping and day and added to the existing rollup
+ * rows with a batched update; rows that do not exist yet are inserted. Callers run this in
+ * the same transaction as the click event inserts so the rollup never drifts from the raw data.
+ * Clicks recorded before the rollup existed are added once by
+ * {@code db/migration/<database>/backfill-click-rollup.sql}.
+ */
+@Slf4j
+@Service
+public class ClickRollupService {
+
+    private static final String INCREMENT_ROLLUP =
+            "update click_daily_rollup set click_count = click_count + ? where url_mapping_id = ? and click_day = ?";
+    private static final String INSERT_ROLLUP =
+            "insert into click_daily_rollup (url_mapping_id, click_day, click_count) values (?, ?, ?)";
+    private static final String COUNT_EVENTS_BY_DAY =
+            "select url_mapping_id, cast(click_date as date), count(*) from click_event " +
+            "where click_date >= ? and click_date < ? group by url_mapping_id, cast(click_date as date)";
+    private static final String RAISE_ROLLUP =
+            "update click_daily_rollup set click_count = greatest(click_count, ?) where url_mapping_id = ? and click_day = ?";
+    private static final int COMPACT_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates the rollup service.
+     *
+     * @param jdbcTemplate the JDBC template used to update the rollup table
+     */
+    public ClickRollupService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Adds a batch of clicks to the daily rollup.
+     * <p>
+     * A concurrent insert of the same (url mapping, day) row by another instance surfaces as a
+     * {@link org.springframework.dao.DuplicateKeyException}; retrying the batch then takes the
+     * update path.
+     *
+     * @param clicks the clicks to add
+     */
+    public void addClicks(List<ClickIngestionService.PendingClick> clicks) {
+        Map<RollupKey, Long> deltas = new LinkedHashMap<>();
+        for (ClickIngestionService.PendingClick click : clicks) {
+            deltas.merge(new RollupKey(click.getUrlMappingId(), click.getClickDate().toLocalDate()), 1L, Long::sum);
+        }
+
+        List<RollupKey> keys = new ArrayList<>(deltas.keySet());
+        List<Object[]> updates = new ArrayList<>(keys.size());
+        for (RollupKey key : keys) {
+            updates.add(new Object[]{deltas.get(key), key.urlMappingId, Date.valueOf(key.day)});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(INCREMENT_ROLLUP, updates);
+        if (Arrays.stream(updated).anyMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+            // Rewritten batches (MySQL rewriteBatchedStatements) report no per-row counts.
+            updated = updates.stream().mapToInt(args -> jdbcTemplate.update(INCREMENT_ROLLUP, args)).toArray();
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                RollupKey key = keys.get(i);
+                inserts.add(new Object[]{key.urlMappingId, Date.valueOf(key.day), deltas.get(key)});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ROLLUP, inserts);
+        }
+    }
+
+    /**
+     * Makes sure the rollup accounts for every click event between two days.
+     * <p>
+     * Used before raw events are deleted. Each rollup row is raised to at least the number of
+     * events counted for its day, and missing rows are inserted; rows are never lowered, so
+     * running this again after some of the events were already deleted is harmless.
+     *
+     * @param from the first day (inclusive)
+     * @param to   the last day (exclusive)
+     * @return the number of (url mapping, day) counts checked
+     */
+    public long compact(LocalDate from, LocalDate to) {
+        List<Object[]> batch = new ArrayList<>(COMPACT_BATCH_SIZE);
+        long[] checked = {0};
+        jdbcTemplate.query(COUNT_EVENTS_BY_DAY, rs -> {
+            batch.add(new Object[]{rs.getLong(3), rs.getLong(1), rs.getDate(2)});
+            if (batch.size() == COMPACT_BATCH_SIZE) {
+                raise(batch);
+                checked[0] += batch.size();
+                batch.clear();
+            }
+        }, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+        raise(batch);
+        return checked[0] + batch.size();
+    }
+
+    private void raise(List<Object[]> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(RAISE_ROLLUP, counts);
+        if (Arrays.stream(updated).anyMatch(count -> count == Statement.SUCCESS_NO_INFO)) {
+            updated = counts.stream().mapToInt(args -> jdbcTemplate.update(RAISE_ROLLUP, args)).toArray();
+        }
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                Object[] args = counts.get(i);
+                inserts.add(new Object[]{args[1], args[2], args[0]});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ROLLUP, inserts);
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class RollupKey {
+        private final Long urlMappingId;
+        private final LocalDate day;
+    }
+}
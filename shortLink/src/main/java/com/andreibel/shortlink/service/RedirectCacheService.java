@@ -0,0 +1,322 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.service.cache.SharedRedirectCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Two-level cache from short URL token to its resolved target.
+ * <p>
+ * The first level is a bounded in-process cache that serves hot redirects without any round
+ * trip. Entries are evicted by size (W-TinyLFU) and by age, and explicitly when a mapping is
+ * deleted. Hit, miss and eviction counts are published to Micrometer under the
+ * {@code redirect} cache name.
+ * <p>
+ * When a {@link SharedRedirectCache} is configured, local misses are looked up in it before
+ * the database, and codes that do not exist are remembered there for
+ * {@code shortlink.cache.shared.negative-ttl}. A cold code is loaded once across the fleet:
+ * concurrent misses on one instance share a single load, and across instances only the
+ * holder of the shared lock queries the database while the others poll the shared tier for
+ * up to {@code shortlink.cache.shared.lock-wait}. Evictions are broadcast to every instance,
+ * and again after the deleting transaction commits so a concurrent reload cannot bring a
+ * deleted mapping back. Newly created codes are announced the same way, which also drops a
+ * "does not exist" entry a redirect may have cached for the code before it was created.
+ * Failures of the shared tier degrade to database lookups.
+ */
+@Slf4j
+@Service
+public class RedirectCacheService {
+
+    private static final String MISSING = "";
+    private static final char SEPARATOR = '|';
+    private static final long LOCK_POLL_MILLIS = 10;
+
+    private final Cache<String, ResolvedUrlDTO> cache;
+    private final SharedRedirectCache shared;
+    private final Duration sharedTtl;
+    private final Duration negativeTtl;
+    private final Duration lockTimeout;
+    private final Duration lockWait;
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> creationListeners = new CopyOnWriteArrayList<>();
+    private final Counter sharedHits;
+    private final Counter sharedMisses;
+    private final Counter sharedErrors;
+
+    /**
+     * Creates the cache and registers its statistics with the meter registry.
+     *
+     * @param maximumSize       the maximum number of cached short URLs
+     * @param expireAfterWrite  how long an entry may be served before it is reloaded
+     * @param shared            the shared tier, if one is configured
+     * @param sharedTtl         how long a resolved code is kept in the shared tier
+     * @param negativeTtl       how long a missing code is remembered in the shared tier
+     * @param lockTimeout       how long a loading lock is held if its owner never releases it
+     * @param lockWait          how long an instance waits for another instance's load
+     * @param meterRegistry     the registry to publish cache metrics to
+     */
+    public RedirectCacheService(@Value("${shortlink.cache.redirect.maximum-size:100000}") long maximumSize,
+                                @Value("${shortlink.cache.redirect.expire-after-write:PT10M}") Duration expireAfterWrite,
+                                ObjectProvider<SharedRedirectCache> shared,
+                                @Value("${shortlink.cache.shared.ttl:PT1H}") Duration sharedTtl,
+                                @Value("${shortlink.cache.shared.negative-ttl:PT30S}") Duration negativeTtl,
+                                @Value("${shortlink.cache.shared.lock-timeout:PT2S}") Duration lockTimeout,
+                                @Value("${shortlink.cache.shared.lock-wait:PT0.25S}") Duration lockWait,
+                                MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "redirect");
+        this.shared = shared.getIfAvailable();
+        this.sharedTtl = sharedTtl;
+        this.negativeTtl = negativeTtl;
+        this.lockTimeout = lockTimeout;
+        this.lockWait = lockWait;
+        this.sharedHits = sharedCounter(meterRegistry, "hit");
+        this.sharedMisses = sharedCounter(meterRegistry, "miss");
+        this.sharedErrors = sharedCounter(meterRegistry, "error");
+        if (this.shared != null) {
+            this.shared.subscribe(this::invalidateLocally);
+            this.shared.subscribeCreations(this::createdLocally);
+        }
+    }
+
+    /**
+     * Returns the cached target for a short URL, loading it on a miss.
+     * <p>
+     * Concurrent misses for the same token share a single load. A {@code null}
+     * result from the loader is not cached locally.
+     *
+     * @param shortUrl the short URL token
+     * @param loader   loads the target from the database on a miss
+     * @return the resolved target, or null if the short URL does not exist
+     */
+    public ResolvedUrlDTO get(String shortUrl, Function<String, ResolvedUrlDTO> loader) {
+        return shared == null ? cache.get(shortUrl, loader) : cache.get(shortUrl, key -> loadShared(key, loader));
+    }
+
+    /**
+     * Returns the cached target for a short URL without loading it.
+     *
+     * @param shortUrl the short URL token
+     * @return the cached target, or null if it is not cached
+     */
+    public ResolvedUrlDTO getIfPresent(String shortUrl) {
+        return cache.getIfPresent(shortUrl);
+    }
+
+    /**
+     * Removes a short URL from the cache on every instance so the next redirect reloads it.
+     *
+     * @param shortUrl the short URL token
+     */
+    public void evict(String shortUrl) {
+        invalidateLocally(shortUrl);
+        if (shared == null) {
+            return;
+        }
+        evictShared(shortUrl);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictShared(shortUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * Announces a newly created short URL to every instance and drops any cached "does not exist" entry for it.
+     * <p>
+     * Inside a transaction the announcement is sent after commit, so other instances can already load the mapping.
+     *
+     * @param shortUrl the short URL token
+     */
+    public void announceCreated(String shortUrl) {
+        if (shared == null) {
+            createdLocally(shortUrl);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishCreated(shortUrl);
+                }
+            });
+        } else {
+            publishCreated(shortUrl);
+        }
+    }
+
+    /**
+     * Registers a listener called whenever a short URL is created on any instance.
+     *
+     * @param listener receives the created short URL token
+     */
+    public void addCreationListener(Consumer<String> listener) {
+        creationListeners.add(listener);
+    }
+
+    /**
+     * Registers a listener called whenever a short URL is evicted on any instance, so other
+     * local caches can drop it too.
+     *
+     * @param listener receives the evicted short URL token
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    private void invalidateLocally(String shortUrl) {
+        cache.invalidate(shortUrl);
+        for (Consumer<String> listener : invalidationListeners) {
+            listener.accept(shortUrl);
+        }
+    }
+
+    private void createdLocally(String shortUrl) {
+        cache.invalidate(shortUrl);
+        for (Consumer<String> listener : creationListeners) {
+            listener.accept(shortUrl);
+        }
+    }
+
+    private void publishCreated(String shortUrl) {
+        boolean published = false;
+        try {
+            shared.evict(shortUrl);
+            shared.publishCreation(shortUrl);
+            published = true;
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+        if (!published) {
+            // Other instances learn about the code from their own lookups; this one must not miss it.
+            createdLocally(shortUrl);
+        }
+    }
+
+    private void evictShared(String shortUrl) {
+        run(() -> {
+            shared.evict(shortUrl);
+            shared.publishInvalidation(shortUrl);
+        });
+    }
+
+    private ResolvedUrlDTO loadShared(String shortUrl, Function<String, ResolvedUrlDTO> loader) {
+        String cached = call(() -> shared.get(shortUrl));
+        if (cached != null) {
+            sharedHits.increment();
+            return decode(cached);
+        }
+        sharedMisses.increment();
+        String token = null;
+        boolean lockedElsewhere;
+        try {
+            token = shared.tryLock(shortUrl, lockTimeout);
+            lockedElsewhere = token == null;
+        } catch (RuntimeException e) {
+            // The shared tier is down; load without a lock rather than waiting for nothing.
+            failed(e);
+            lockedElsewhere = false;
+        }
+        if (lockedElsewhere) {
+            cached = awaitLoad(shortUrl);
+            if (cached != null) {
+                return decode(cached);
+            }
+        }
+        try {
+            ResolvedUrlDTO resolved = loader.apply(shortUrl);
+            run(() -> shared.put(shortUrl, encode(resolved), resolved == null ? negativeTtl : sharedTtl));
+            return resolved;
+        } finally {
+            if (token != null) {
+                String held = token;
+                run(() -> shared.unlock(shortUrl, held));
+            }
+        }
+    }
+
+    /**
+     * Polls the shared tier while another instance loads a code.
+     */
+    private String awaitLoad(String shortUrl) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(LOCK_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            String cached = call(() -> shared.get(shortUrl));
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    private <T> T call(Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            failed(e);
+            return null;
+        }
+    }
+
+    private void run(Runnable operation) {
+        try {
+            operation.run();
+        } catch (RuntimeException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(RuntimeException e) {
+        sharedErrors.increment();
+        log.debug("Shared redirect cache unavailable, falling back to the database", e);
+    }
+
+    private static String encode(ResolvedUrlDTO resolved) {
+        return resolved == null ? MISSING : resolved.getId() + String.valueOf(SEPARATOR) + resolved.getOriginalUrl();
+    }
+
+    private static ResolvedUrlDTO decode(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        int separator = value.indexOf(SEPARATOR);
+        return new ResolvedUrlDTO(Long.valueOf(value.substring(0, separator)), value.substring(separator + 1));
+    }
+
+    private static Counter sharedCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("shortlink.cache.shared.requests")
+                .description("Lookups in the shared redirect cache tier")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
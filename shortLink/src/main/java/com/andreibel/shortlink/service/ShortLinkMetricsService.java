@@ -0,0 +1,85 @@
+package com.andreibel.shortlink.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the URL shortening and redirect paths.
+ * <p>
+ * Redirect timers are registered once per outcome so the hot path records into an existing
+ * {@link Timer} without a registry lookup. Percentile histograms and SLO buckets for
+ * {@code shortlink.redirect} are configured in {@code application.properties}.
+ */
+@Service
+public class ShortLinkMetricsService {
+
+    /**
+     * How a redirect was answered.
+     */
+    public enum RedirectOutcome {
+        /**
+         * Rejected by the short code filter without any lookup.
+         */
+        FILTERED,
+        /**
+         * Served from the memory-mapped short code index.
+         */
+        INDEX_HIT,
+        /**
+         * Served from the redirect cache.
+         */
+        CACHE_HIT,
+        /**
+         * Loaded from the database.
+         */
+        CACHE_MISS,
+        /**
+         * Looked up in the database and not found.
+         */
+        NOT_FOUND
+    }
+
+    private final Map<RedirectOutcome, Timer> redirectTimers = new EnumMap<>(RedirectOutcome.class);
+    private final Counter codeCollisions;
+
+    /**
+     * Registers the meters.
+     *
+     * @param meterRegistry the registry to publish metrics to
+     */
+    public ShortLinkMetricsService(MeterRegistry meterRegistry) {
+        for (RedirectOutcome outcome : RedirectOutcome.values()) {
+            redirectTimers.put(outcome, Timer.builder("shortlink.redirect")
+                    .description("Time to resolve a short URL, excluding HTTP handling")
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.codeCollisions = Counter.builder("shortlink.codes.collisions")
+                .description("Generated short codes rejected because they were already taken")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the resolution time of a redirect.
+     *
+     * @param outcome     how the redirect was answered
+     * @param startNanos  {@link System#nanoTime()} when resolution started
+     */
+    public void recordRedirect(RedirectOutcome outcome, long startNanos) {
+        redirectTimers.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a generated short code that collided with an existing one.
+     */
+    public void recordCodeCollision() {
+        codeCollisions.increment();
+    }
+}
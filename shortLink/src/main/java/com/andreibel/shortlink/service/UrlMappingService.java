@@ -1,21 +1,37 @@
 package com.andreibel.shortlink.service;
 
 import com.andreibel.shortlink.dtos.ClickEventDTO;
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.dtos.UniqueVisitorsDTO;
 import com.andreibel.shortlink.dtos.UrlMappingDTO;
-import com.andreibel.shortlink.moduels.ClickEvent;
+import com.andreibel.shortlink.dtos.UrlMappingPageDTO;
 import com.andreibel.shortlink.moduels.UrlMapping;
 import com.andreibel.shortlink.moduels.User;
-import com.andreibel.shortlink.repository.ClickEventRepository;
 import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.ShortLinkMetricsService.RedirectOutcome;
+import com.andreibel.shortlink.service.index.ShortCodeFilterService;
+import com.andreibel.shortlink.service.index.ShortCodeIndexService;
+import com.andreibel.shortlink.service.shortcode.ShortCodeGenerator;
+import com.andreibel.shortlink.service.toplinks.TopLinksService;
+import com.andreibel.shortlink.service.visitor.VisitorSketchService;
+import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.stream.Collectors;
 
 
@@ -25,39 +41,141 @@ import java.util.stream.Collectors;
 @Service
 @AllArgsConstructor
 public class UrlMappingService {
+    private static final int MAX_CODE_ATTEMPTS = 3;
+    private static final String CURSOR_SEPARATOR = "~";
+    /**
+     * Name of the unique constraint on {@link UrlMapping#getShortUrl()}.
+     */
+    private static final String SHORT_URL_CONSTRAINT = "uk_url_mapping_short_url";
+
     private UrlMappingRepository urlMappingRepository;
-    private ClickEventRepository clickEventRepository;
+    private ClickAnalyticsService clickAnalyticsService;
+    private RedirectCacheService redirectCacheService;
+    private ClickIngestionService clickIngestionService;
+    private ClickCounterService clickCounterService;
+    private ShortCodeGenerator shortCodeGenerator;
+    private ShortCodeIndexService shortCodeIndexService;
+    private ShortCodeFilterService shortCodeFilterService;
+    private ShortLinkMetricsService shortLinkMetricsService;
+    private VisitorSketchService visitorSketchService;
+    private TopLinksService topLinksService;
+
+    /**
+     * Hides codes deleted on any instance from the local short code index, and adds codes
+     * created on any instance to the local short code filter.
+     */
+    @PostConstruct
+    void subscribeToInvalidations() {
+        redirectCacheService.addInvalidationListener(shortCodeIndexService::evict);
+        redirectCacheService.addCreationListener(shortCodeFilterService::add);
+    }
 
     /**
      * Creates a new short URL mapping for the given original URL and user.
+     * <p>
+     * The short URL comes from the configured {@link ShortCodeGenerator}. If it is already
+     * taken, the unique constraint rejects the insert and a new code is drawn. Any other
+     * constraint violation is rethrown.
      *
      * @param originalUrl the original URL to shorten
      * @param user the user creating the short URL
      * @return the created UrlMappingDTO
      */
-    @Transactional
     public UrlMappingDTO createShortUrl(String originalUrl, User user) {
-        String shortUrl = generateShortUrl();
-        UrlMapping urlMapping = new UrlMapping();
-        urlMapping.setOriginalUrl(originalUrl);
-        urlMapping.setShortUrl(shortUrl);
-        urlMapping.setUser(user);
-        urlMapping.setCreatedDate(LocalDateTime.now());
-        UrlMapping saved = urlMappingRepository.save(urlMapping);
-        return convertMapToDto(saved);
+        for (int attempt = 1; ; attempt++) {
+            UrlMapping urlMapping = new UrlMapping();
+            urlMapping.setOriginalUrl(originalUrl);
+            urlMapping.setShortUrl(shortCodeGenerator.nextCode());
+            urlMapping.setUser(user);
+            urlMapping.setCreatedDate(LocalDateTime.now());
+            try {
+                UrlMapping saved = urlMappingRepository.save(urlMapping);
+                shortCodeFilterService.add(saved.getShortUrl());
+                redirectCacheService.announceCreated(saved.getShortUrl());
+                return convertMapToDto(saved);
+            } catch (DataIntegrityViolationException e) {
+                if (!isShortUrlCollision(e)) {
+                    throw e;
+                }
+                shortLinkMetricsService.recordCodeCollision();
+                if (attempt >= MAX_CODE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether an insert was rejected because its short URL is already taken.
+     * Databases report the constraint name differently (qualified, upper-cased or with an
+     * index suffix), so the name only has to contain {@value #SHORT_URL_CONSTRAINT}.
+     */
+    private static boolean isShortUrlCollision(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String constraint = violation.getConstraintName();
+                return constraint != null && constraint.toLowerCase(Locale.ROOT).contains(SHORT_URL_CONSTRAINT);
+            }
+        }
+        return false;
     }
 
     /**
-     * Retrieves all URL mappings for a given user.
+     * Retrieves one page of the URL mappings of a given user.
+     * <p>
+     * Pages are read with keyset pagination on (createdDate, id) through a DTO projection,
+     * so neither entities nor user proxies are loaded and deep pages cost the same as the first.
      *
      * @param user the user whose URLs to retrieve
-     * @return list of UrlMappingDTOs
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param size the maximum number of mappings on the page
+     * @param direction whether to list the newest ({@code DESC}) or oldest ({@code ASC}) mappings first
+     * @return the page of UrlMappingDTOs and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    public List<UrlMappingDTO> getUserUrls(User user) {
-        List<UrlMapping> urlMappings = urlMappingRepository.findByUser(user);
-        return urlMappings.stream()
-                .map(this::convertMapToDto)
-                .toList();
+    public UrlMappingPageDTO getUserUrls(User user, String cursor, int size, Sort.Direction direction) {
+        Limit limit = Limit.of(size + 1);
+        List<UrlMappingDTO> page;
+        if (cursor == null || cursor.isEmpty()) {
+            page = direction.isAscending()
+                    ? urlMappingRepository.findPageByUserOldestFirst(user.getId(), limit)
+                    : urlMappingRepository.findPageByUserNewestFirst(user.getId(), limit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            LocalDateTime createdDate = LocalDateTime.parse(position[0]);
+            Long id = Long.valueOf(position[1]);
+            page = direction.isAscending()
+                    ? urlMappingRepository.findPageByUserOldestFirst(user.getId(), createdDate, id, limit)
+                    : urlMappingRepository.findPageByUserNewestFirst(user.getId(), createdDate, id, limit);
+        }
+
+        String nextCursor = null;
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            UrlMappingDTO last = page.get(size - 1);
+            nextCursor = encodeCursor(last.getCreatedDate(), last.getId());
+        }
+        return new UrlMappingPageDTO(page, nextCursor);
+    }
+
+    private String encodeCursor(LocalDateTime createdDate, Long id) {
+        String position = createdDate + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split(CURSOR_SEPARATOR, 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
     }
 
     private UrlMappingDTO convertMapToDto(UrlMapping urlMapping) {
@@ -72,42 +190,38 @@ public class UrlMappingService {
     }
 
 
-    private String generateShortUrl() {
-        String allowedChars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        Random random = new Random();
-        StringBuilder shortUrl = new StringBuilder(8);
-        for (int i = 0; i < 8; i++) {
-            shortUrl.append(allowedChars.charAt(random.nextInt(allowedChars.length())));
-        }
-        return shortUrl.toString();
-    }
-
     /**
      * Retrieves click events for a short URL grouped by date within a time range.
+     * <p>
+     * Counts are computed by {@link ClickAnalyticsService} without loading click event entities.
      *
      * @param shortUrl the short URL
      * @param start the start datetime
      * @param end the end datetime
      * @return list of ClickEventDTOs grouped by date, or null if URL not found
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public List<ClickEventDTO> getClickEventsByDate(String shortUrl, LocalDateTime start, LocalDateTime end) {
         UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
         if (urlMapping != null) {
-            return clickEventRepository.findByUrlMappingAndClickDateBetween(urlMapping, start, end).stream()
-                    .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()))
-                    .entrySet().stream()
-                    .map(entry -> {
-                        ClickEventDTO clickEventDTO = new ClickEventDTO();
-                        clickEventDTO.setClickDate(entry.getKey());
-                        clickEventDTO.setCount(entry.getValue());
-                        return clickEventDTO;
-                    })
-                    .collect(Collectors.toList());
+            return clickAnalyticsService.getDailyClicks(urlMapping, start, end);
         }
         return null;
     }
 
+    /**
+     * Returns the id of a URL mapping owned by a user.
+     *
+     * @param shortUrl the short URL
+     * @param user     the expected owner
+     * @return the mapping id, or null if the short URL does not exist or belongs to someone else
+     */
+    @Transactional(readOnly = true)
+    public Long getOwnedMappingId(String shortUrl, User user) {
+        UrlMapping urlMapping = urlMappingRepository.findByShortUrlAndUser(shortUrl, user);
+        return urlMapping == null ? null : urlMapping.getId();
+    }
+
     /**
      * Retrieves total clicks for all URLs of a user grouped by date within a date range.
      *
@@ -116,36 +230,90 @@ public class UrlMappingService {
      * @param end the end date
      * @return map of LocalDate to click count
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public Map<LocalDate, Long> getTotalClicksByUserAndDate(User user, LocalDate start, LocalDate end) {
-        List<UrlMapping> urlMappings = urlMappingRepository.findByUser(user);
-        List<ClickEvent> clickEvents = clickEventRepository.findByUrlMappingInAndClickDateBetween(urlMappings, start.atStartOfDay(), end.plusDays(1).atStartOfDay());
-        return clickEvents.stream()
-                .collect(Collectors.groupingBy(click -> click.getClickDate().toLocalDate(), Collectors.counting()));
+        return clickAnalyticsService.getDailyClicksByUser(user, start, end).stream()
+                .collect(Collectors.toMap(ClickEventDTO::getClickDate, ClickEventDTO::getCount, Long::sum, LinkedHashMap::new));
+    }
 
+    /**
+     * Estimates the unique visitors of a short URL owned by a user.
+     *
+     * @param shortUrl the short URL
+     * @param user     the user that must own the short URL
+     * @param start    the first day (inclusive)
+     * @param end      the last day (inclusive)
+     * @return the daily and total estimates, or null if the user does not own the short URL
+     */
+    public UniqueVisitorsDTO getUniqueVisitors(String shortUrl, User user, LocalDate start, LocalDate end) {
+        Long urlMappingId = getOwnedMappingId(shortUrl, user);
+        return urlMappingId == null ? null : visitorSketchService.getUniqueVisitors(urlMappingId, start, end);
     }
 
     /**
-     * Retrieves the original URL mapping by its short URL and logs the click event.
+     * Estimates the unique visitors across all short URLs of a user; a visitor of several links is counted once.
+     *
+     * @param user  the user
+     * @param start the first day (inclusive)
+     * @param end   the last day (inclusive)
+     * @return the daily and total estimates
+     */
+    public UniqueVisitorsDTO getUniqueVisitorsByUser(User user, LocalDate start, LocalDate end) {
+        return visitorSketchService.getUniqueVisitorsByUser(user, start, end);
+    }
+
+    /**
+     * Resolves a short URL to its original URL for an unknown visitor and logs the click event.
      *
      * @param shortUrl the short URL
-     * @return the UrlMapping, or null if not found
+     * @return the resolved target, or null if not found
      */
-    @Transactional
-    public UrlMapping getOriginalUrlByShortUrl(String shortUrl) {
-        UrlMapping urlMapping = urlMappingRepository.findByShortUrl(shortUrl);
-        if (urlMapping != null) {
-            // Increment click count
-            urlMapping.setClickCount(urlMapping.getClickCount() + 1);
-            urlMappingRepository.save(urlMapping);
-
-            // Log click event
-            ClickEvent clickEvent = new ClickEvent();
-            clickEvent.setUrlMapping(urlMapping);
-            clickEvent.setClickDate(LocalDateTime.now());
-            clickEventRepository.save(clickEvent);
+    public ResolvedUrlDTO getOriginalUrlByShortUrl(String shortUrl) {
+        return getOriginalUrlByShortUrl(shortUrl, null, null);
+    }
+
+    /**
+     * Resolves a short URL to its original URL and logs the click event.
+     * <p>
+     * Codes the {@link ShortCodeFilterService} knows not to exist are rejected without any lookup.
+     * Otherwise the lookup is served from the memory-mapped {@link ShortCodeIndexService} when enabled,
+     * then from {@link RedirectCacheService}; the database is only queried when both miss. The click is counted by {@link ClickCounterService} and
+     * {@link TopLinksService} and handed to {@link ClickIngestionService}; all are written asynchronously,
+     * so no write happens before the redirect is sent. The visitor is only hashed once the code has
+     * resolved, so unknown codes cost no digest.
+     *
+     * @param shortUrl  the short URL
+     * @param address   the client address, or null if the visitor is unknown
+     * @param userAgent the {@code User-Agent} header, or null
+     * @return the resolved target, or null if not found
+     */
+    public ResolvedUrlDTO getOriginalUrlByShortUrl(String shortUrl, String address, String userAgent) {
+        long start = System.nanoTime();
+        if (!shortCodeFilterService.mightExist(shortUrl)) {
+            shortLinkMetricsService.recordRedirect(RedirectOutcome.FILTERED, start);
+            return null;
+        }
+        RedirectOutcome outcome = RedirectOutcome.INDEX_HIT;
+        ResolvedUrlDTO resolved = shortCodeIndexService.find(shortUrl);
+        if (resolved == null) {
+            outcome = RedirectOutcome.CACHE_HIT;
+            resolved = redirectCacheService.getIfPresent(shortUrl);
+        }
+        if (resolved == null) {
+            outcome = RedirectOutcome.CACHE_MISS;
+            resolved = redirectCacheService.get(shortUrl, urlMappingRepository::findResolvedByShortUrl);
+        }
+        if (resolved != null) {
+            clickCounterService.increment(resolved.getId());
+            topLinksService.record(resolved.getId());
+            long visitorHash = address == null ? 0 : visitorSketchService.visitorHash(address, userAgent);
+            clickIngestionService.record(resolved.getId(), LocalDateTime.now(), visitorHash);
+        } else {
+            outcome = RedirectOutcome.NOT_FOUND;
+            shortCodeFilterService.recordFalsePositive();
         }
-        return urlMapping;
+        shortLinkMetricsService.recordRedirect(outcome, start);
+        return resolved;
     }
 
     @Transactional
@@ -153,6 +321,7 @@ public class UrlMappingService {
         UrlMapping urlMapping = urlMappingRepository.findByShortUrlAndUser(shortUrl, user);
         if (urlMapping != null) {
             urlMappingRepository.delete(urlMapping);
+            redirectCacheService.evict(shortUrl);
         }
     }
 }
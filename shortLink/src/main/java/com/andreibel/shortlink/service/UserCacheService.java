@@ -0,0 +1,66 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.moduels.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of {@link User} entities by username.
+ * <p>
+ * Spares authenticated requests the user lookups done by the authentication filter and
+ * the controllers. Cached users are detached; they are only used to bind queries and
+ * associations, never modified. Entries expire by age and are evicted explicitly when a
+ * user changes. Statistics are published to Micrometer under the {@code users} cache name.
+ */
+@Service
+public class UserCacheService {
+
+    private final Cache<String, User> cache;
+
+    /**
+     * Creates the cache and registers its statistics with the meter registry.
+     *
+     * @param maximumSize      the maximum number of cached users
+     * @param expireAfterWrite how long an entry may be served before it is reloaded
+     * @param meterRegistry    the registry to publish cache metrics to
+     */
+    public UserCacheService(@Value("${shortlink.cache.users.maximum-size:10000}") long maximumSize,
+                            @Value("${shortlink.cache.users.expire-after-write:PT10M}") Duration expireAfterWrite,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    /**
+     * Returns the cached user for a username, loading it on a miss.
+     * <p>
+     * A {@code null} result from the loader is not cached.
+     *
+     * @param username the username
+     * @param loader   loads the user from the database on a miss
+     * @return the user, or null if no user has this username
+     */
+    public User get(String username, Function<String, User> loader) {
+        return cache.get(username, loader);
+    }
+
+    /**
+     * Removes a user from the cache so the next lookup reloads it.
+     *
+     * @param username the username
+     */
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+}
@@ -7,7 +7,6 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service for loading user-specific data for authentication.
@@ -18,19 +17,24 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    UserCacheService userCacheService;
+
     /**
-     * Loads the user by username.
+     * Loads the user by username, through the user cache.
+     * <p>
+     * Not transactional, so a cache hit does not check out a database connection.
      *
      * @param username the username identifying the user
      * @return UserDetails for authentication
      * @throws UsernameNotFoundException if user not found
      */
     @Override
-    @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
-
+        User user = userCacheService.get(username, name -> userRepository.findByUsername(name).orElse(null));
+        if (user == null) {
+            throw new UsernameNotFoundException("User Not Found with username: " + username);
+        }
 
         return UserDetailsImpl.build(user);
     }
@@ -25,6 +25,7 @@ public class UserService {
     private UserRepository userRepository;
     private AuthenticationManager authManager;
     private JwtUtils jwtUtils;
+    private UserCacheService userCacheService;
 
     /**
      * Registers a new user with encoded password.
@@ -34,7 +35,9 @@ public class UserService {
      */
     public User registerUser(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userCacheService.evict(saved.getUsername());
+        return saved;
     }
 
 
@@ -78,14 +81,18 @@ public class UserService {
 
     /**
      * Finds a user by username.
+     * <p>
+     * Served from the user cache; the returned entity is detached and must not be modified.
      *
      * @param name the username
      * @return the User entity
      * @throws UsernameNotFoundException if user not found
      */
     public User findByUsername(String name) {
-        return userRepository.findByUsername(name).orElseThrow(
-                () -> new UsernameNotFoundException("Username " + name + " not found")
-        );
+        User user = userCacheService.get(name, username -> userRepository.findByUsername(username).orElse(null));
+        if (user == null) {
+            throw new UsernameNotFoundException("Username " + name + " not found");
+        }
+        return user;
     }
 }
@@ -0,0 +1,119 @@
+package com.andreibel.shortlink.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import jdk.management.VirtualThreadSchedulerMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes virtual thread health when requests run on virtual threads
+ * ({@code spring.threads.virtual.enabled=true}).
+ * <p>
+ * A JFR stream counts {@code jdk.VirtualThreadPinned} events, where a virtual thread blocked
+ * while holding on to its carrier (e.g. in native code), and {@code jdk.VirtualThreadSubmitFailed}
+ * events. Gauges expose the virtual thread scheduler: carrier parallelism, mounted and queued
+ * virtual threads. Mounted equal to parallelism with a growing queue means the carriers are
+ * saturated and more concurrency will not help.
+ */
+@Slf4j
+@Service
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadMetricsService {
+
+    private final MeterRegistry meterRegistry;
+    private final Duration pinnedThreshold;
+    private final Counter pinned;
+    private final Timer pinnedDuration;
+    private final Counter submitFailed;
+    private final AtomicLong pinnedLogged = new AtomicLong();
+
+    private RecordingStream recording;
+
+    /**
+     * Creates the service and registers its meters.
+     *
+     * @param meterRegistry   the registry to publish metrics to
+     * @param pinnedThreshold the minimum pinning duration that is recorded
+     */
+    public VirtualThreadMetricsService(MeterRegistry meterRegistry,
+                                       @Value("${shortlink.threads.pinned-threshold:PT0.02S}") Duration pinnedThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.pinnedThreshold = pinnedThreshold;
+        this.pinned = Counter.builder("shortlink.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .register(meterRegistry);
+        this.pinnedDuration = Timer.builder("shortlink.threads.virtual.pinned.duration")
+                .description("How long pinned virtual threads blocked their carrier")
+                .register(meterRegistry);
+        this.submitFailed = Counter.builder("shortlink.threads.virtual.submit.failed")
+                .description("Virtual threads that could not be started or unparked")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the scheduler gauges and starts the JFR event stream.
+     */
+    @PostConstruct
+    public void start() {
+        VirtualThreadSchedulerMXBean scheduler = ManagementFactory.getPlatformMXBean(VirtualThreadSchedulerMXBean.class);
+        Gauge.builder("shortlink.threads.virtual.scheduler.parallelism", scheduler, VirtualThreadSchedulerMXBean::getParallelism)
+                .description("Target number of carrier threads")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.threads.virtual.scheduler.pool.size", scheduler, VirtualThreadSchedulerMXBean::getPoolSize)
+                .description("Carrier threads started, including those blocked or compensating")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.threads.virtual.scheduler.mounted", scheduler, VirtualThreadSchedulerMXBean::getMountedVirtualThreadCount)
+                .description("Virtual threads currently running on a carrier")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.threads.virtual.scheduler.queued", scheduler, VirtualThreadSchedulerMXBean::getQueuedVirtualThreadCount)
+                .description("Virtual threads waiting for a carrier")
+                .register(meterRegistry);
+
+        recording = new RecordingStream();
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(pinnedThreshold).withStackTrace();
+        recording.enable("jdk.VirtualThreadSubmitFailed");
+        recording.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        recording.onEvent("jdk.VirtualThreadSubmitFailed", event -> submitFailed.increment());
+        recording.startAsync();
+    }
+
+    /**
+     * Stops the JFR event stream.
+     */
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        pinnedDuration.record(event.getDuration());
+        // The first occurrence and then one in a thousand, so a hot pinning site cannot flood the log.
+        if (pinnedLogged.getAndIncrement() % 1000 == 0 && event.getStackTrace() != null) {
+            RecordedFrame top = event.getStackTrace().getFrames().stream()
+                    .filter(RecordedFrame::isJavaFrame)
+                    .findFirst()
+                    .orElse(null);
+            log.warn("Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(),
+                    top == null ? "unknown" : top.getMethod().getType().getName() + "." + top.getMethod().getName()
+                            + ":" + top.getLineNumber());
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.andreibel.shortlink.service.archive;
+
+import com.andreibel.shortlink.dtos.ClickEventDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Archives aged click events to {@link ClickSegment} files on local disk and answers daily
+ * click queries from them.
+ * <p>
+ * Enabled with {@code shortlink.archive.enabled}. {@link com.andreibel.shortlink.service.ClickRetentionService}
+ * exports each expiring range of days before removing it from {@code click_event}. Segments
+ * cover consecutive, non-overlapping ranges; the end of the newest one is the archive
+ * watermark. Days before the watermark are answered from the archive only and days from it
+ * on from the database only, so events still in the database after their export are never
+ * counted twice. Segments are written to a temporary file and moved into place atomically.
+ * <p>
+ * The archive lives on the local disk of the instance that runs the retention job; point
+ * {@code shortlink.archive.directory} at shared storage for other instances to read it. Every
+ * instance rescans the directory every {@code shortlink.archive.rescan-interval}, opening the
+ * segments other instances wrote and dropping the ones that were removed.
+ */
+@Slf4j
+@Service
+public class ClickArchiveService {
+
+    private static final String SELECT_EVENTS =
+            "select url_mapping_id, click_date from click_event where click_date >= ? and click_date < ? " +
+            "order by url_mapping_id, click_date";
+    private static final String FILE_PREFIX = "clicks-";
+    private static final String FILE_SUFFIX = ".seg";
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path directory;
+    private final int fetchSize;
+    /**
+     * Open segments by file; guarded by this service.
+     */
+    private final Map<Path, ClickSegment> opened = new HashMap<>();
+    /**
+     * Snapshot of the open segments sorted by first day, read without locking.
+     */
+    private volatile List<ClickSegment> segments = List.of();
+
+    /**
+     * Creates the archive service.
+     *
+     * @param jdbcTemplate       the JDBC template used to read expiring events
+     * @param transactionManager the transaction manager; an export streams its rows in a read-only transaction
+     * @param enabled            whether aged events are archived and archived days are queried
+     * @param directory          the directory holding the segment files
+     * @param fetchSize          the number of rows fetched per round trip while exporting
+     */
+    public ClickArchiveService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${shortlink.archive.enabled:false}") boolean enabled,
+                               @Value("${shortlink.archive.directory:click-archive}") Path directory,
+                               @Value("${shortlink.archive.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Opens the existing segment files.
+     *
+     * @throws IOException if the archive directory cannot be read
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        rescan();
+    }
+
+    /**
+     * Opens segment files added to the directory since the last scan and closes the ones removed from it.
+     *
+     * @throws IOException if the archive directory cannot be read
+     */
+    @Scheduled(fixedDelayString = "${shortlink.archive.rescan-interval:PT1M}")
+    public synchronized void rescan() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Set<Path> present = new HashSet<>();
+        int added = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                present.add(file);
+                if (opened.containsKey(file)) {
+                    continue;
+                }
+                try {
+                    opened.put(file, ClickSegment.open(file));
+                    added++;
+                } catch (IOException | IllegalArgumentException e) {
+                    log.warn("Ignoring unreadable click segment {}", file, e);
+                    // Not remembered, so a file still being copied in is retried on the next scan.
+                }
+            }
+        }
+        int removed = 0;
+        for (Path file : new ArrayList<>(opened.keySet())) {
+            if (!present.contains(file)) {
+                close(opened.remove(file));
+                removed++;
+            }
+        }
+        if (added > 0 || removed > 0) {
+            publish();
+            log.info("Opened {} and closed {} click segments; archive is up to {}", added, removed, getWatermark());
+        }
+    }
+
+    /**
+     * Closes every segment file.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        opened.values().forEach(ClickArchiveService::close);
+        opened.clear();
+        segments = List.of();
+    }
+
+    /**
+     * Returns whether the archive is enabled.
+     *
+     * @return true if aged events are archived
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the day from which clicks are answered from the database.
+     *
+     * @return the end of the newest segment, or null if nothing was archived
+     */
+    public LocalDate getWatermark() {
+        List<ClickSegment> current = segments;
+        return current.isEmpty() ? null : current.getLast().getTo();
+    }
+
+    /**
+     * Writes the click events of a range of days to a new segment.
+     * <p>
+     * The part of the range already archived is skipped, so exporting the same days again is harmless.
+     *
+     * @param from the first day (inclusive)
+     * @param to   the day after the last one (exclusive)
+     * @return the number of events archived
+     */
+    public long export(LocalDate from, LocalDate to) {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDate watermark = getWatermark();
+        if (watermark != null && watermark.isAfter(from)) {
+            from = watermark;
+        }
+        if (!from.isBefore(to)) {
+            return 0;
+        }
+        LocalDate start = from;
+        Path file = directory.resolve(FILE_PREFIX + start.format(NAME_FORMAT) + "-" + to.format(NAME_FORMAT) + FILE_SUFFIX);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            long events;
+            try (ClickSegment.Writer writer = new ClickSegment.Writer(temporary, start, to)) {
+                readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SELECT_EVENTS);
+                    statement.setFetchSize(fetchSize);
+                    statement.setTimestamp(1, Timestamp.valueOf(start.atStartOfDay()));
+                    statement.setTimestamp(2, Timestamp.valueOf(to.atStartOfDay()));
+                    return statement;
+                }, rs -> {
+                    try {
+                        writer.add(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                writer.finish();
+                events = writer.getEventCount();
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            register(file);
+            log.info("Archived {} click events from {} to {} in {} ({} bytes)", events, start, to, file, Files.size(file));
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive click events from " + start + " to " + to, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                log.debug("Failed to delete {}", temporary, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the archived clicks of some url mappings per day.
+     *
+     * @param urlMappingIds the url mapping ids
+     * @param start         the first day (inclusive)
+     * @param end           the last day (inclusive)
+     * @return one {@link ClickEventDTO} per day with clicks, ordered by day
+     */
+    public List<ClickEventDTO> countDailyClicks(Collection<Long> urlMappingIds, LocalDate start, LocalDate end) {
+        long[] ids = urlMappingIds.stream().mapToLong(Long::longValue).sorted().toArray();
+        Map<LocalDate, Long> counts = new TreeMap<>();
+        try {
+            for (ClickSegment segment : segments) {
+                segment.countDailyClicks(ids, start, end, counts);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived click events", e);
+        }
+        List<ClickEventDTO> days = new ArrayList<>(counts.size());
+        counts.forEach((day, count) -> days.add(new ClickEventDTO(day, count)));
+        return days;
+    }
+
+    private synchronized void register(Path file) throws IOException {
+        ClickSegment segment = ClickSegment.open(file);
+        ClickSegment previous = opened.put(file, segment);
+        if (previous != null) {
+            close(previous);
+        }
+        publish();
+    }
+
+    private void publish() {
+        List<ClickSegment> sorted = new ArrayList<>(opened.values());
+        sorted.sort(Comparator.comparing(ClickSegment::getFrom));
+        segments = List.copyOf(sorted);
+    }
+
+    private static void close(ClickSegment segment) {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.debug("Failed to close click segment", e);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.andreibel.shortlink.service.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, compressed columnar file of archived click events covering a range of days.
+ * <p>
+ * Events are sorted by url mapping id, then time. The url mapping id column is dictionary
+ * encoded and run-length encoded: the index holds one entry per run of an id (delta-encoded)
+ * with the number of its events. The timestamp column holds, per run, the seconds since the
+ * segment start of the first click followed by the deltas between consecutive clicks, all as
+ * unsigned varints, and is deflated in blocks of about {@value #BLOCK_SIZE} bytes. Blocks are
+ * cut at mapping boundaries, or within the clicks of a mapping once a block is full; the rest
+ * of that mapping continues in the next block under another index entry with the same id, so
+ * blocks, offsets and counts stay bounded however hot a link is. The file is:
+ * <pre>
+ *   blocks   variable   deflated timestamp runs
+ *   index    variable   range, event count, block table, mapping dictionary
+ *   footer   12 bytes   index offset, magic
+ * </pre>
+ * Opening a segment reads only the index; answering a query inflates just the blocks holding
+ * the requested mappings.
+ */
+public final class ClickSegment implements AutoCloseable {
+
+    private static final int MAGIC = 0x53434c53; // "SLCS"
+    /**
+     * Version 2 allows several index entries per mapping; version 1 files are read the same way.
+     */
+    private static final int VERSION = 2;
+    private static final int FOOTER_SIZE = 12;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long eventCount;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final int[] blockRawLengths;
+    private final long[] mappingIds;
+    private final int[] mappingBlocks;
+    private final int[] mappingOffsets;
+    private final int[] mappingCounts;
+
+    private ClickSegment(FileChannel channel, ByteBuffer index) {
+        this.channel = channel;
+        int version = index.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported click segment version");
+        }
+        this.from = LocalDate.ofEpochDay(index.getLong());
+        this.to = LocalDate.ofEpochDay(index.getLong());
+        this.eventCount = index.getLong();
+        int blocks = index.getInt();
+        this.blockOffsets = new long[blocks];
+        this.blockLengths = new int[blocks];
+        this.blockRawLengths = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = index.getLong();
+            blockLengths[i] = index.getInt();
+            blockRawLengths[i] = index.getInt();
+        }
+        int mappings = index.getInt();
+        this.mappingIds = new long[mappings];
+        this.mappingBlocks = new int[mappings];
+        this.mappingOffsets = new int[mappings];
+        this.mappingCounts = new int[mappings];
+        long id = 0;
+        for (int i = 0; i < mappings; i++) {
+            id += readVarLong(index);
+            mappingIds[i] = id;
+            mappingBlocks[i] = (int) readVarLong(index);
+            mappingOffsets[i] = (int) readVarLong(index);
+            mappingCounts[i] = (int) readVarLong(index);
+        }
+    }
+
+    /**
+     * Opens a segment file and reads its index.
+     *
+     * @param file the segment file
+     * @return the segment; close it to release the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a click segment
+     */
+    public static ClickSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IllegalArgumentException("Not a click segment file");
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            if (footer.getInt() != MAGIC || indexOffset < 0 || indexOffset > size - FOOTER_SIZE
+                    || size - FOOTER_SIZE - indexOffset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Not a click segment file");
+            }
+            return new ClickSegment(channel, read(channel, indexOffset, (int) (size - FOOTER_SIZE - indexOffset)));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the clicks of some url mappings per day to a map.
+     *
+     * @param ids   the url mapping ids, sorted ascending
+     * @param start the first day (inclusive)
+     * @param end   the last day (inclusive)
+     * @param into  per-day click counts to add to
+     * @throws IOException if a block cannot be read
+     */
+    public void countDailyClicks(long[] ids, LocalDate start, LocalDate end, Map<LocalDate, Long> into) throws IOException {
+        if (end.isBefore(from) || !start.isBefore(to)) {
+            return;
+        }
+        long base = from.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        long startSecond = start.atStartOfDay().toEpochSecond(ZoneOffset.UTC) - base;
+        long endSecond = end.plusDays(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC) - base;
+        int cachedBlock = -1;
+        ByteBuffer block = null;
+        for (long id : ids) {
+            int mapping = Arrays.binarySearch(mappingIds, id);
+            if (mapping < 0) {
+                continue;
+            }
+            // A mapping spanning several blocks has consecutive entries; start from the first.
+            while (mapping > 0 && mappingIds[mapping - 1] == id) {
+                mapping--;
+            }
+            for (; mapping < mappingIds.length && mappingIds[mapping] == id; mapping++) {
+                if (mappingBlocks[mapping] != cachedBlock) {
+                    cachedBlock = mappingBlocks[mapping];
+                    block = inflate(cachedBlock);
+                }
+                if (!countRun(block, mapping, startSecond, endSecond, base, into)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the clicks of one index entry that fall in a range.
+     *
+     * @return false if the entry reached the end of the range, so later entries of the mapping can be skipped
+     */
+    private boolean countRun(ByteBuffer block, int mapping, long startSecond, long endSecond, long base,
+                             Map<LocalDate, Long> into) {
+        block.position(mappingOffsets[mapping]);
+        long second = 0;
+        for (int i = 0; i < mappingCounts[mapping]; i++) {
+            second += readVarLong(block);
+            if (second >= endSecond) {
+                return false;
+            }
+            if (second >= startSecond) {
+                into.merge(LocalDateTime.ofEpochSecond(base + second, 0, ZoneOffset.UTC).toLocalDate(), 1L, Long::sum);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first day covered by the segment.
+     *
+     * @return the first day (inclusive)
+     */
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the day after the last day covered by the segment.
+     *
+     * @return the end day (exclusive)
+     */
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the number of click events in the segment.
+     *
+     * @return the event count
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the number of distinct url mappings in the segment.
+     *
+     * @return the mapping count
+     */
+    public int getMappingCount() {
+        int count = 0;
+        for (int i = 0; i < mappingIds.length; i++) {
+            if (i == 0 || mappingIds[i] != mappingIds[i - 1]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of compressed blocks in the segment.
+     *
+     * @return the block count
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer inflate(int block) throws IOException {
+        ByteBuffer compressed = read(channel, blockOffsets[block], blockLengths[block]);
+        ByteBuffer raw = ByteBuffer.allocate(blockRawLengths[block]);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            while (raw.hasRemaining() && !inflater.finished()) {
+                inflater.inflate(raw);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt click segment block " + block, e);
+        } finally {
+            inflater.end();
+        }
+        return raw.flip();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of click segment");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Writes a new segment file.
+     * <p>
+     * Events must be added sorted by url mapping id, then click date. Call {@link #finish()}
+     * to write the index and flush the file to disk.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long base;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 1024);
+        private final ByteArrayOutputStream blockTable = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        private long position;
+        private int blockCount;
+        private int mappingCount;
+        private long eventCount;
+        private long currentId = -1;
+        private long previousId;
+        private int currentOffset;
+        private int currentCount;
+        private long previousSecond;
+
+        /**
+         * Creates the file.
+         *
+         * @param file the file to write; replaced if it exists
+         * @param from the first day covered (inclusive)
+         * @param to   the day after the last day covered (exclusive)
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(Path file, LocalDate from, LocalDate to) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            this.from = from;
+            this.to = to;
+            this.base = from.atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+
+        /**
+         * Adds a click event.
+         *
+         * @param urlMappingId the id of the clicked mapping
+         * @param clickDate    when the click happened, within the covered days
+         * @throws IOException if a full block cannot be written
+         * @throws IllegalArgumentException if events are not sorted or outside the covered days
+         */
+        public void add(long urlMappingId, LocalDateTime clickDate) throws IOException {
+            long second = clickDate.toEpochSecond(ZoneOffset.UTC) - base;
+            if (second < 0 || !clickDate.toLocalDate().isBefore(to)) {
+                throw new IllegalArgumentException("Click at " + clickDate + " is outside " + from + " - " + to);
+            }
+            if (urlMappingId != currentId) {
+                if (urlMappingId < currentId) {
+                    throw new IllegalArgumentException("Click events must be sorted by url mapping id");
+                }
+                endMapping();
+                if (block.size() >= BLOCK_SIZE) {
+                    flushBlock();
+                }
+                startRun(urlMappingId);
+            } else if (second < previousSecond) {
+                throw new IllegalArgumentException("Click events must be sorted by click date");
+            } else if (block.size() >= BLOCK_SIZE) {
+                // A hot mapping continues in the next block under a new index entry.
+                endMapping();
+                flushBlock();
+                startRun(urlMappingId);
+            }
+            writeVarLong(block, second - previousSecond);
+            previousSecond = second;
+            currentCount++;
+            eventCount++;
+        }
+
+        /**
+         * Writes the last block, the index and the footer, and flushes the file.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        public void finish() throws IOException {
+            endMapping();
+            flushBlock();
+            ByteBuffer header = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(VERSION)
+                    .putLong(from.toEpochDay())
+                    .putLong(to.toEpochDay())
+                    .putLong(eventCount)
+                    .putInt(blockCount)
+                    .flip();
+            ByteBuffer mappings = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(mappingCount).flip();
+            long indexOffset = position;
+            write(header);
+            write(ByteBuffer.wrap(blockTable.toByteArray()));
+            write(mappings);
+            write(ByteBuffer.wrap(dictionary.toByteArray()));
+            write(ByteBuffer.allocate(FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN).putLong(indexOffset).putInt(MAGIC).flip());
+            channel.force(true);
+        }
+
+        /**
+         * Returns the number of click events added so far.
+         *
+         * @return the event count
+         */
+        public long getEventCount() {
+            return eventCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+
+        private void startRun(long urlMappingId) {
+            currentId = urlMappingId;
+            currentOffset = block.size();
+            // Each run starts from the segment start, so it can be read without the ones before it.
+            previousSecond = 0;
+        }
+
+        private void endMapping() {
+            if (currentCount == 0) {
+                return;
+            }
+            writeVarLong(dictionary, currentId - previousId);
+            writeVarLong(dictionary, blockCount);
+            writeVarLong(dictionary, currentOffset);
+            writeVarLong(dictionary, currentCount);
+            previousId = currentId;
+            mappingCount++;
+            currentCount = 0;
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.size() == 0) {
+                return;
+            }
+            byte[] raw = block.toByteArray();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            ByteBuffer entry = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+                    .putLong(position)
+                    .putInt(compressed.size())
+                    .putInt(raw.length)
+                    .flip();
+            blockTable.write(entry.array(), 0, entry.limit());
+            write(ByteBuffer.wrap(compressed.toByteArray()));
+            block.reset();
+            blockCount++;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.andreibel.shortlink.service.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Embedded stand-in for {@link RedisSharedRedirectCache}, enabled with
+ * {@code shortlink.cache.shared.type=in-memory}.
+ * <p>
+ * State is static, so every application context started in the same JVM shares one tier the
+ * way separate instances share a Redis server. This lets tests and benchmarks exercise
+ * multi-instance invalidation and single-flight loading without external infrastructure.
+ * It is not meant for production.
+ */
+@Component
+@ConditionalOnProperty(name = "shortlink.cache.shared.type", havingValue = "in-memory")
+public class InMemorySharedRedirectCache implements SharedRedirectCache {
+
+    private static final Map<String, Expiring> VALUES = new ConcurrentHashMap<>();
+    private static final Map<String, Expiring> LOCKS = new ConcurrentHashMap<>();
+    private static final List<Consumer<String>> SUBSCRIBERS = new CopyOnWriteArrayList<>();
+    private static final List<Consumer<String>> CREATION_SUBSCRIBERS = new CopyOnWriteArrayList<>();
+
+    private final List<Consumer<String>> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Unsubscribes the listeners registered through this instance.
+     */
+    @PreDestroy
+    public void stop() {
+        SUBSCRIBERS.removeAll(subscribers);
+        CREATION_SUBSCRIBERS.removeAll(subscribers);
+    }
+
+    @Override
+    public String get(String shortUrl) {
+        Expiring entry = VALUES.get(shortUrl);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            VALUES.remove(shortUrl, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public void put(String shortUrl, String value, Duration ttl) {
+        VALUES.put(shortUrl, new Expiring(value, ttl));
+    }
+
+    @Override
+    public void evict(String shortUrl) {
+        VALUES.remove(shortUrl);
+    }
+
+    @Override
+    public String tryLock(String shortUrl, Duration ttl) {
+        Expiring lock = new Expiring(UUID.randomUUID().toString(), ttl);
+        Expiring holder = LOCKS.compute(shortUrl, (key, current) ->
+                current == null || current.isExpired() ? lock : current);
+        return holder == lock ? lock.value : null;
+    }
+
+    @Override
+    public void unlock(String shortUrl, String token) {
+        LOCKS.computeIfPresent(shortUrl, (key, current) -> current.value.equals(token) ? null : current);
+    }
+
+    @Override
+    public void publishInvalidation(String shortUrl) {
+        for (Consumer<String> subscriber : SUBSCRIBERS) {
+            subscriber.accept(shortUrl);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        subscribers.add(listener);
+        SUBSCRIBERS.add(listener);
+    }
+
+    @Override
+    public void publishCreation(String shortUrl) {
+        for (Consumer<String> subscriber : CREATION_SUBSCRIBERS) {
+            subscriber.accept(shortUrl);
+        }
+    }
+
+    @Override
+    public void subscribeCreations(Consumer<String> listener) {
+        subscribers.add(listener);
+        CREATION_SUBSCRIBERS.add(listener);
+    }
+
+    private static final class Expiring {
+        private final String value;
+        private final long expiresAt;
+
+        private Expiring(String value, Duration ttl) {
+            this.value = value;
+            this.expiresAt = System.nanoTime() + ttl.toNanos();
+        }
+
+        private boolean isExpired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+}
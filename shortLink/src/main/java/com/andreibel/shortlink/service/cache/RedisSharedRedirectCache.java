@@ -0,0 +1,137 @@
+package com.andreibel.shortlink.service.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * {@link SharedRedirectCache} backed by Redis or any server speaking its protocol
+ * (Valkey, KeyDB, Dragonfly), enabled with {@code shortlink.cache.shared.type=redis}.
+ * <p>
+ * Values live under {@code <key-prefix><code>} with a TTL. Loading locks are
+ * {@code SET NX PX} keys released by a compare-and-delete script. Invalidations and newly
+ * created codes go over pub/sub, which does not queue messages for disconnected subscribers; the local cache TTL
+ * bounds how long a missed invalidation can be served.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shortlink.cache.shared.type", havingValue = "redis")
+public class RedisSharedRedirectCache implements SharedRedirectCache {
+
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String keyPrefix;
+    private final ChannelTopic channel;
+    private final ChannelTopic creationChannel;
+
+    /**
+     * Creates the cache and starts listening for invalidations.
+     *
+     * @param redis             the template used for reads, writes and publishing
+     * @param connectionFactory the connection factory the subscriber connects with
+     * @param keyPrefix         the prefix of every key written by this cache
+     * @param channel           the pub/sub channel invalidations are broadcast on
+     * @param creationChannel   the pub/sub channel newly created codes are broadcast on
+     */
+    public RedisSharedRedirectCache(StringRedisTemplate redis,
+                                    RedisConnectionFactory connectionFactory,
+                                    @Value("${shortlink.cache.shared.key-prefix:shortlink:redirect:}") String keyPrefix,
+                                    @Value("${shortlink.cache.shared.channel:shortlink:redirect:invalidate}") String channel,
+                                    @Value("${shortlink.cache.shared.creation-channel:shortlink:redirect:created}") String creationChannel) {
+        this.redis = redis;
+        this.keyPrefix = keyPrefix;
+        this.channel = new ChannelTopic(channel);
+        this.creationChannel = new ChannelTopic(creationChannel);
+        this.listenerContainer = new RedisMessageListenerContainer();
+        this.listenerContainer.setConnectionFactory(connectionFactory);
+        this.listenerContainer.afterPropertiesSet();
+        this.listenerContainer.start();
+    }
+
+    /**
+     * Stops the invalidation subscriber.
+     */
+    @PreDestroy
+    public void stop() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Override
+    public String get(String shortUrl) {
+        return redis.opsForValue().get(keyPrefix + shortUrl);
+    }
+
+    @Override
+    public void put(String shortUrl, String value, Duration ttl) {
+        redis.opsForValue().set(keyPrefix + shortUrl, value, ttl);
+    }
+
+    @Override
+    public void evict(String shortUrl) {
+        redis.delete(keyPrefix + shortUrl);
+    }
+
+    @Override
+    public String tryLock(String shortUrl, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redis.opsForValue().setIfAbsent(lockKey(shortUrl), token, ttl);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    @Override
+    public void unlock(String shortUrl, String token) {
+        redis.execute(RELEASE_LOCK, List.of(lockKey(shortUrl)), token);
+    }
+
+    @Override
+    public void publishInvalidation(String shortUrl) {
+        redis.convertAndSend(channel.getTopic(), shortUrl);
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listen(channel, listener, "invalidation");
+    }
+
+    @Override
+    public void publishCreation(String shortUrl) {
+        redis.convertAndSend(creationChannel.getTopic(), shortUrl);
+    }
+
+    @Override
+    public void subscribeCreations(Consumer<String> listener) {
+        listen(creationChannel, listener, "creation");
+    }
+
+    private void listen(ChannelTopic topic, Consumer<String> listener, String kind) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                listener.accept(new String(message.getBody(), StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply redirect cache {}", kind, e);
+            }
+        }, topic);
+    }
+
+    private String lockKey(String shortUrl) {
+        return keyPrefix + "lock:" + shortUrl;
+    }
+}
@@ -0,0 +1,86 @@
+package com.andreibel.shortlink.service.cache;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Cache tier shared by every instance, sitting behind the local redirect cache.
+ * <p>
+ * Values are opaque strings encoded by {@link com.andreibel.shortlink.service.RedirectCacheService}.
+ * Implementations also provide a short-lived per-code lock, so that only one instance loads a
+ * cold code from the database, and broadcast channels for invalidations and newly created codes. The implementation is
+ * selected with {@code shortlink.cache.shared.type}; without one, the local cache is used alone.
+ * Callers treat every exception as a cache miss, so implementations need not retry.
+ */
+public interface SharedRedirectCache {
+
+    /**
+     * Returns the cached value of a short code.
+     *
+     * @param shortUrl the short URL token
+     * @return the cached value, or null if it is not cached
+     */
+    String get(String shortUrl);
+
+    /**
+     * Caches the value of a short code.
+     *
+     * @param shortUrl the short URL token
+     * @param value    the encoded value
+     * @param ttl      how long the value may be served
+     */
+    void put(String shortUrl, String value, Duration ttl);
+
+    /**
+     * Removes a short code from the shared tier.
+     *
+     * @param shortUrl the short URL token
+     */
+    void evict(String shortUrl);
+
+    /**
+     * Tries to become the only instance loading a short code.
+     *
+     * @param shortUrl the short URL token
+     * @param ttl      how long the lock is held if it is never released
+     * @return a token to release the lock with, or null if another instance holds it
+     */
+    String tryLock(String shortUrl, Duration ttl);
+
+    /**
+     * Releases a lock taken with {@link #tryLock(String, Duration)}, unless it expired and was
+     * taken by someone else in the meantime.
+     *
+     * @param shortUrl the short URL token
+     * @param token    the token returned by {@link #tryLock(String, Duration)}
+     */
+    void unlock(String shortUrl, String token);
+
+    /**
+     * Tells every instance, including this one, to drop a short code from its local caches.
+     *
+     * @param shortUrl the short URL token
+     */
+    void publishInvalidation(String shortUrl);
+
+    /**
+     * Registers a listener for invalidations published by any instance.
+     *
+     * @param listener receives the invalidated short URL token
+     */
+    void subscribe(Consumer<String> listener);
+
+    /**
+     * Tells every instance, including this one, that a short code was created.
+     *
+     * @param shortUrl the short URL token
+     */
+    void publishCreation(String shortUrl);
+
+    /**
+     * Registers a listener for creations published by any instance.
+     *
+     * @param listener receives the created short URL token
+     */
+    void subscribeCreations(Consumer<String> listener);
+}
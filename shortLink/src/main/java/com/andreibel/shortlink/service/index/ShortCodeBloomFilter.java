@@ -0,0 +1,146 @@
+package com.andreibel.shortlink.service.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter over short codes.
+ * <p>
+ * Bits live in an {@link AtomicLongArray} and are set with compare-and-set, so writers never
+ * block readers. Each code is hashed once to 64 bits; the probe positions are derived from
+ * two halves of that hash (Kirsch-Mitzenmacher), which keeps both operations allocation-free.
+ * A Bloom filter cannot remove codes; deleted codes stay "possibly present" until the
+ * filter is rebuilt.
+ */
+public final class ShortCodeBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final LongAdder insertions = new LongAdder();
+
+    private ShortCodeBloomFilter(long bitCount, int hashCount, long expectedInsertions) {
+        long words = (bitCount + 63) >>> 6;
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large: " + bitCount + " bits");
+        }
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words << 6;
+        this.hashCount = hashCount;
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Creates a filter sized for a number of codes and a target false-positive probability.
+     *
+     * @param expectedInsertions the number of codes the filter is sized for
+     * @param fpp                the false-positive probability at that size, between 0 and 1
+     * @return the empty filter
+     */
+    public static ShortCodeBloomFilter create(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long bitCount = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        return new ShortCodeBloomFilter(bitCount, hashCount, n);
+    }
+
+    /**
+     * Adds a code.
+     *
+     * @param code the short code
+     * @return true if any bit changed, i.e. the code was definitely not present before
+     */
+    public boolean put(CharSequence code) {
+        long hash = hash(code);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = bits.get(word);
+            }
+        }
+        if (changed) {
+            insertions.increment();
+        }
+        return changed;
+    }
+
+    /**
+     * Tests whether a code may have been added.
+     *
+     * @param code the short code
+     * @return false if the code was definitely never added
+     */
+    public boolean mightContain(CharSequence code) {
+        long hash = hash(code);
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the false-positive probability expected at the current number of codes.
+     *
+     * @return the expected false-positive probability
+     */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.sum() / bitCount), hashCount);
+    }
+
+    /**
+     * Returns the approximate number of distinct codes added.
+     *
+     * @return the insertion count
+     */
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    /**
+     * Returns the number of codes the filter was sized for.
+     *
+     * @return the expected insertions
+     */
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * Returns the memory used by the bit array.
+     *
+     * @return the size in bytes
+     */
+    public long getByteSize() {
+        return bitCount >>> 3;
+    }
+
+    private static long hash(CharSequence code) {
+        // FNV-1a over the characters, finished with the murmur3 mixer.
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            hash = (hash ^ code.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
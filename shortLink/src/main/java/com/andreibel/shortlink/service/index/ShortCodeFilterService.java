@@ -0,0 +1,266 @@
+package com.andreibel.shortlink.service.index;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rejects requests for short codes that do not exist before any cache or database access.
+ * <p>
+ * Keeps a {@link ShortCodeBloomFilter} over every code in {@code url_mapping}, built in the
+ * background at startup. Codes created on this node are added immediately, and codes created
+ * on other nodes as soon as their creation is broadcast by
+ * {@link com.andreibel.shortlink.service.RedirectCacheService}. As a backstop, and for
+ * deployments without a shared cache tier, new codes are also polled by {@code created_date},
+ * re-reading {@code shortlink.bloom.poll-overlap} before the newest creation seen so late commits
+ * and clock skew between nodes are covered. Ids are not used for this: with pooled sequences
+ * every node inserts from its own id block, so ids say nothing about commit order.
+ * <p>
+ * A miss is only final while the filter is current. Until the first build completes, and
+ * whenever no poll has succeeded for {@code shortlink.bloom.max-staleness}, every code is let
+ * through to the database.
+ * <p>
+ * Deleted codes cannot be removed from a Bloom filter; they cost one database lookup until the
+ * filter is rebuilt every {@code shortlink.bloom.rebuild-interval}, or sooner once it holds
+ * more codes than it was sized for. Memory use and the expected and observed false-positive
+ * rates are published to Micrometer.
+ */
+@Slf4j
+@Service
+public class ShortCodeFilterService {
+
+    private static final String COUNT_MAPPINGS = "select count(*), max(created_date) from url_mapping";
+    private static final String SELECT_CODES = "select short_url from url_mapping";
+    private static final String SELECT_NEW_CODES = "select short_url, created_date from url_mapping where created_date >= ?";
+    /**
+     * Smallest capacity a filter is sized for, so an empty database does not cause constant rebuilds.
+     */
+    private static final long MIN_CAPACITY = 1_000_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final double fpp;
+    private final Duration pollOverlap;
+    private final Duration maxStaleness;
+    private final Counter rejected;
+    private final Counter stalePasses;
+    private final Counter falsePositives;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile ShortCodeBloomFilter filter;
+    private volatile ShortCodeBloomFilter building;
+    private volatile LocalDateTime polledSince;
+    private volatile long syncedAtNanos;
+
+    /**
+     * Creates the filter service and registers its metrics.
+     *
+     * @param jdbcTemplate       the JDBC template used to build and refresh the filter
+     * @param transactionManager the transaction manager; a build streams its rows in a read-only transaction
+     * @param meterRegistry      the registry to publish filter metrics to
+     * @param enabled            whether unknown codes are rejected by the filter
+     * @param fpp                the target false-positive probability
+     * @param pollOverlap        how far before the newest creation seen each poll re-reads
+     * @param maxStaleness       how long after the last successful poll misses are still trusted
+     */
+    public ShortCodeFilterService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${shortlink.bloom.enabled:true}") boolean enabled,
+                                  @Value("${shortlink.bloom.fpp:0.01}") double fpp,
+                                  @Value("${shortlink.bloom.poll-overlap:PT15S}") Duration pollOverlap,
+                                  @Value("${shortlink.bloom.max-staleness:PT10S}") Duration maxStaleness) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.fpp = fpp;
+        this.pollOverlap = pollOverlap;
+        this.maxStaleness = maxStaleness;
+        this.rejected = Counter.builder("shortlink.bloom.rejected")
+                .description("Redirects for unknown codes answered by the filter alone")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("shortlink.bloom.false.positives")
+                .description("Codes the filter let through that did not exist")
+                .register(meterRegistry);
+        this.stalePasses = Counter.builder("shortlink.bloom.stale.passes")
+                .description("Filter misses let through because the filter was not current")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.bloom.memory.bytes", this, service -> service.filter == null ? 0 : service.filter.getByteSize())
+                .description("Memory used by the filter bits")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.bloom.entries", this, service -> service.filter == null ? 0 : service.filter.getInsertions())
+                .description("Approximate number of codes in the filter")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.bloom.fpp.expected", this, service -> service.filter == null ? 0 : service.filter.expectedFpp())
+                .description("False-positive probability expected from the filter fill")
+                .register(meterRegistry);
+        Gauge.builder("shortlink.bloom.fpp.observed", this, ShortCodeFilterService::observedFpp)
+                .description("Share of unknown codes the filter let through")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the filter in the background.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread builder = new Thread(this::rebuild, "short-code-filter-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Tests whether a short code may exist.
+     *
+     * @param shortUrl the short URL token
+     * @return false if the code definitely does not exist
+     */
+    public boolean mightExist(String shortUrl) {
+        ShortCodeBloomFilter current = filter;
+        if (!enabled || current == null || current.mightContain(shortUrl)) {
+            return true;
+        }
+        if (System.nanoTime() - syncedAtNanos > maxStaleness.toNanos()) {
+            // The code may have been created after the last successful poll.
+            stalePasses.increment();
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Records that a code let through by the filter did not exist.
+     */
+    public void recordFalsePositive() {
+        if (enabled && filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Adds a newly created short code.
+     *
+     * @param shortUrl the short URL token
+     */
+    public void add(String shortUrl) {
+        if (!enabled) {
+            return;
+        }
+        ShortCodeBloomFilter current = filter;
+        if (current != null) {
+            current.put(shortUrl);
+        }
+        ShortCodeBloomFilter next = building;
+        if (next != null) {
+            next.put(shortUrl);
+        }
+    }
+
+    /**
+     * Adds codes created on other nodes since the last poll, and rebuilds a filter that has outgrown its size.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.bloom.poll-interval:PT1S}")
+    public void poll() {
+        ShortCodeBloomFilter current = filter;
+        if (!enabled || current == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            jdbcTemplate.query(SELECT_NEW_CODES, rs -> {
+                add(rs.getString(1));
+                advancePolledSince(rs.getTimestamp(2).toLocalDateTime());
+            }, Timestamp.valueOf(getPollFrom()));
+            syncedAtNanos = started;
+        } catch (DataAccessException e) {
+            log.warn("Failed to poll new short codes for the filter", e);
+        }
+        if (current.getInsertions() > current.getExpectedInsertions()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the filter from {@code url_mapping}, dropping deleted codes.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.bloom.rebuild-interval:PT6H}",
+            initialDelayString = "${shortlink.bloom.rebuild-interval:PT6H}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            Object[] countAndNewest = jdbcTemplate.queryForObject(COUNT_MAPPINGS,
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getTimestamp(2)});
+            long count = (Long) countAndNewest[0];
+            LocalDateTime newest = countAndNewest[1] == null ? now : ((Timestamp) countAndNewest[1]).toLocalDateTime();
+            // Twice the current size leaves room to grow before the next rebuild.
+            ShortCodeBloomFilter next = ShortCodeBloomFilter.create(Math.max(MIN_CAPACITY, count * 2), fpp);
+            building = next;
+            // Inside a transaction so PostgreSQL honours the fetch size instead of buffering every row.
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT_CODES);
+                statement.setFetchSize(10_000);
+                return statement;
+            }, rs -> {
+                next.put(rs.getString(1));
+            }));
+            // Codes committing during the scan are picked up by the next poll, which re-reads the overlap.
+            advancePolledSince(newest);
+            syncedAtNanos = started;
+            filter = next;
+            log.info("Built short code filter with {} codes ({} KiB) in {} ms", next.getInsertions(),
+                    next.getByteSize() / 1024, Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } catch (RuntimeException e) {
+            log.error("Failed to build short code filter", e);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Returns the creation time from which the next poll reads.
+     *
+     * @return the newest creation seen minus the poll overlap
+     */
+    LocalDateTime getPollFrom() {
+        return polledSince.minus(pollOverlap);
+    }
+
+    private void advancePolledSince(LocalDateTime createdDate) {
+        LocalDateTime current = polledSince;
+        if (current == null || createdDate.isAfter(current)) {
+            polledSince = createdDate;
+        }
+    }
+
+    private double observedFpp() {
+        double letThrough = falsePositives.count();
+        double unknown = letThrough + rejected.count();
+        return unknown == 0 ? 0 : letThrough / unknown;
+    }
+}
@@ -0,0 +1,324 @@
+package com.andreibel.shortlink.service.index;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only hash index from short code to URL mapping, memory-mapped from a file.
+ * <p>
+ * Codes of up to 10 base62 characters are packed into a long, 6 bits per character, and
+ * stored in an open-addressing table with linear probing. The file is:
+ * <pre>
+ *   header   64 bytes   magic, version, slot count, entry count, max id, build time
+ *   slots    24 bytes   key (0 = empty), url mapping id, offset of the original URL
+ *   data     variable   2-byte length + UTF-8 bytes per original URL
+ * </pre>
+ * The mapping lives outside the Java heap, so the index adds no GC pressure, and opening an
+ * existing file costs nothing until pages are touched. Probing allocates nothing; only the
+ * returned URL is materialized on a hit.
+ */
+public final class ShortCodeIndex implements AutoCloseable {
+
+    private static final long MAGIC = 0x4b4e4c54524f4853L; // "SHORTLNK"
+    private static final int VERSION = 1;
+    private static final long HEADER_SIZE = 64;
+    private static final long SLOT_SIZE = 24;
+    private static final int MAX_CODE_LENGTH = 10;
+    /**
+     * Tables are sized so that at most this fraction of slots is used.
+     */
+    private static final double LOAD_FACTOR = 0.5;
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long mask;
+    private final long entryCount;
+    private final long maxId;
+    private final long builtAt;
+
+    private ShortCodeIndex(Arena arena, MemorySegment segment) {
+        this.arena = arena;
+        this.segment = segment;
+        if (segment.byteSize() < HEADER_SIZE || segment.get(LONG, 0) != MAGIC || segment.get(INT, 8) != VERSION) {
+            throw new IllegalArgumentException("Not a short code index file");
+        }
+        this.mask = segment.get(LONG, 16) - 1;
+        this.entryCount = segment.get(LONG, 24);
+        this.maxId = segment.get(LONG, 32);
+        this.builtAt = segment.get(LONG, 40);
+    }
+
+    /**
+     * Maps an index file.
+     *
+     * @param file the index file
+     * @return the index; close it to unmap the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not an index file
+     */
+    public static ShortCodeIndex open(Path file) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ShortCodeIndex(arena, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Packs a short code into a non-zero long, 6 bits per character.
+     *
+     * @param code the short code
+     * @return the key, or 0 if the code is empty, longer than 10 characters or not base62
+     */
+    public static long encode(CharSequence code) {
+        int length = code.length();
+        if (length == 0 || length > MAX_CODE_LENGTH) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                value = c - 'A' + 11;
+            } else if (c >= 'a' && c <= 'z') {
+                value = c - 'a' + 37;
+            } else {
+                return 0;
+            }
+            key = key << 6 | value;
+        }
+        return key;
+    }
+
+    /**
+     * Looks up the id of the URL mapping for a short code without allocating.
+     *
+     * @param code the short code
+     * @return the url mapping id, or -1 if the code is not in the index
+     */
+    public long findId(CharSequence code) {
+        long slot = findSlot(encode(code));
+        return slot < 0 ? -1 : segment.get(LONG, slot + 8);
+    }
+
+    /**
+     * Resolves a short code.
+     *
+     * @param code the short code
+     * @return the resolved target, or null if the code is not in the index
+     */
+    public ResolvedUrlDTO resolve(CharSequence code) {
+        long slot = findSlot(encode(code));
+        if (slot < 0) {
+            return null;
+        }
+        long offset = segment.get(LONG, slot + 16);
+        int length = Short.toUnsignedInt(segment.get(SHORT, offset));
+        byte[] url = segment.asSlice(offset + 2, length).toArray(ValueLayout.JAVA_BYTE);
+        return new ResolvedUrlDTO(segment.get(LONG, slot + 8), new String(url, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the number of short codes in the index.
+     *
+     * @return the entry count
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns the highest url mapping id included when the index was built.
+     *
+     * @return the max id
+     */
+    public long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Returns when the index was built.
+     *
+     * @return the build time in epoch milliseconds
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     *
+     * @return the size in bytes
+     */
+    public long getByteSize() {
+        return segment.byteSize();
+    }
+
+    /**
+     * Unmaps the file. Lookups still running on other threads fail with an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private long findSlot(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        long index = mix(key) & mask;
+        while (true) {
+            long slot = HEADER_SIZE + index * SLOT_SIZE;
+            long stored = segment.get(LONG, slot);
+            if (stored == key) {
+                return slot;
+            }
+            if (stored == 0) {
+                return -1;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Spreads a key over the table; the home slot of a key is {@code mix(key) & (slotCount - 1)}.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Writes a new index file.
+     * <p>
+     * The slot table is sized up front and memory-mapped; original URLs are appended behind
+     * it. Call {@link #finish(long)} to write the header and flush the file to disk.
+     */
+    public static final class Builder implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final Arena arena;
+        private final MemorySegment slots;
+        private final long slotCount;
+        private final long capacity;
+        private final ByteBuffer buffer = ByteBuffer.allocate(2 + 0xFFFF).order(ByteOrder.LITTLE_ENDIAN);
+        private long dataOffset;
+        private long entryCount;
+
+        /**
+         * Creates the file and its slot table.
+         *
+         * @param file            the file to write; replaced if it exists
+         * @param expectedEntries the number of entries that will be added
+         * @throws IOException if the file cannot be created
+         */
+        public Builder(Path file, long expectedEntries) throws IOException {
+            long slots = Long.highestOneBit(Math.max(1024, (long) (expectedEntries / LOAD_FACTOR)) - 1) << 1;
+            this.slotCount = slots;
+            this.capacity = (long) (slots * LOAD_FACTOR);
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.arena = Arena.ofConfined();
+            this.dataOffset = HEADER_SIZE + slots * SLOT_SIZE;
+            this.slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset, arena);
+        }
+
+        /**
+         * Adds a short code. Codes that cannot be encoded and URLs longer than 65535 bytes are skipped.
+         *
+         * @param id          the url mapping id
+         * @param code        the short code
+         * @param originalUrl the original URL
+         * @return true if the code was added
+         * @throws IOException if the URL cannot be written
+         */
+        public boolean add(long id, String code, String originalUrl) throws IOException {
+            long key = encode(code);
+            byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+            if (key == 0 || url.length > 0xFFFF) {
+                return false;
+            }
+            if (entryCount >= capacity) {
+                throw new IllegalStateException("Short code index is full at " + entryCount + " entries");
+            }
+            long index = mix(key) & (slotCount - 1);
+            while (true) {
+                long slot = HEADER_SIZE + index * SLOT_SIZE;
+                long stored = slots.get(LONG, slot);
+                if (stored == key) {
+                    return false;
+                }
+                if (stored == 0) {
+                    slots.set(LONG, slot, key);
+                    slots.set(LONG, slot + 8, id);
+                    slots.set(LONG, slot + 16, dataOffset);
+                    break;
+                }
+                index = (index + 1) & (slotCount - 1);
+            }
+            buffer.clear();
+            buffer.putShort((short) url.length).put(url).flip();
+            while (buffer.hasRemaining()) {
+                dataOffset += channel.write(buffer, dataOffset);
+            }
+            entryCount++;
+            return true;
+        }
+
+        /**
+         * Writes the header and flushes the file.
+         *
+         * @param maxId the highest url mapping id covered by the index
+         * @throws IOException if the file cannot be flushed
+         */
+        public void finish(long maxId) throws IOException {
+            slots.set(LONG, 0, MAGIC);
+            slots.set(INT, 8, VERSION);
+            slots.set(LONG, 16, slotCount);
+            slots.set(LONG, 24, entryCount);
+            slots.set(LONG, 32, maxId);
+            slots.set(LONG, 40, System.currentTimeMillis());
+            slots.force();
+            channel.force(true);
+        }
+
+        /**
+         * Returns the number of short codes added so far.
+         *
+         * @return the entry count
+         */
+        public long getEntryCount() {
+            return entryCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            arena.close();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.andreibel.shortlink.service.index;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves redirects from a local, memory-mapped {@link ShortCodeIndex} when
+ * {@code shortlink.index.enabled} is set.
+ * <p>
+ * On startup an existing index file is mapped immediately; without one, the index is built
+ * from {@code url_mapping} in the background while redirects fall back to the database.
+ * Mappings created after the build are picked up by polling for ids above the highest one
+ * seen and kept in a small on-heap overlay. Because pooled id blocks let nodes commit ids out
+ * of order, each poll re-reads a window of {@code shortlink.index.reorder-window} ids below
+ * that mark. Deletions on this node, and on other nodes when a shared redirect cache
+ * broadcasts invalidations, are hidden at once; otherwise deletions on other nodes disappear
+ * with the next full rebuild, which runs every {@code shortlink.index.rebuild-interval} and
+ * replaces the file atomically.
+ * <p>
+ * A code missing from the index is not proof that it does not exist; callers fall back to
+ * the database.
+ */
+@Slf4j
+@Service
+public class ShortCodeIndexService {
+
+    private static final String COUNT_MAPPINGS = "select count(*), coalesce(max(id), 0) from url_mapping";
+    private static final String SELECT_MAPPINGS =
+            "select id, short_url, original_url from url_mapping where id <= ?";
+    private static final String SELECT_NEW_MAPPINGS =
+            "select id, short_url, original_url from url_mapping where id > ? order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Path file;
+    private final long reorderWindow;
+    private final Duration rebuildInterval;
+
+    private final Map<String, ResolvedUrlDTO> recent = new ConcurrentHashMap<>();
+    private final Set<String> deleted = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile ShortCodeIndex index;
+    private volatile long polledUpTo;
+
+    /**
+     * Creates the index service.
+     *
+     * @param jdbcTemplate       the JDBC template used to build and refresh the index
+     * @param transactionManager the transaction manager; a build streams its rows in a read-only transaction
+     * @param meterRegistry   the registry to publish index metrics to
+     * @param enabled         whether redirects are served from the index
+     * @param file            the index file
+     * @param reorderWindow   how many ids below the highest seen id each poll re-reads
+     * @param rebuildInterval how often the index file is rebuilt from scratch
+     */
+    public ShortCodeIndexService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${shortlink.index.enabled:false}") boolean enabled,
+                                 @Value("${shortlink.index.file:short-code-index.bin}") Path file,
+                                 @Value("${shortlink.index.reorder-window:1000}") long reorderWindow,
+                                 @Value("${shortlink.index.rebuild-interval:PT15M}") Duration rebuildInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.file = file.toAbsolutePath();
+        this.reorderWindow = reorderWindow;
+        this.rebuildInterval = rebuildInterval;
+        if (enabled) {
+            Gauge.builder("shortlink.index.entries", this, service -> service.index == null ? 0 : service.index.getEntryCount())
+                    .description("Short codes in the memory-mapped index")
+                    .register(meterRegistry);
+            Gauge.builder("shortlink.index.overlay.entries", recent, Map::size)
+                    .description("Short codes added since the index was built")
+                    .register(meterRegistry);
+            Gauge.builder("shortlink.index.mapped.bytes", this, service -> service.index == null ? 0 : service.index.getByteSize())
+                    .description("Size of the memory-mapped index file")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Maps the existing index file, or builds one in the background if there is none.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (Files.isRegularFile(file)) {
+            try {
+                ShortCodeIndex existing = ShortCodeIndex.open(file);
+                index = existing;
+                polledUpTo = existing.getMaxId();
+                log.info("Mapped short code index {} with {} entries", file, existing.getEntryCount());
+                if (System.currentTimeMillis() - existing.getBuiltAt() < rebuildInterval.toMillis()) {
+                    return;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                log.warn("Ignoring unreadable short code index {}", file, e);
+            }
+        }
+        Thread builder = new Thread(this::rebuild, "short-code-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Unmaps the index file.
+     */
+    @PreDestroy
+    public void stop() {
+        ShortCodeIndex current = index;
+        index = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Resolves a short code from the index.
+     *
+     * @param shortUrl the short URL token
+     * @return the resolved target, or null if the index is disabled or does not know the code
+     */
+    public ResolvedUrlDTO find(String shortUrl) {
+        if (!enabled || deleted.contains(shortUrl)) {
+            return null;
+        }
+        ResolvedUrlDTO added = recent.get(shortUrl);
+        if (added != null) {
+            return added;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ShortCodeIndex current = index;
+            if (current == null) {
+                return null;
+            }
+            try {
+                return current.resolve(shortUrl);
+            } catch (IllegalStateException e) {
+                // Unmapped by a concurrent rebuild; the replacement is already published.
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops serving a deleted short code from the index.
+     *
+     * @param shortUrl the short URL token
+     */
+    public void evict(String shortUrl) {
+        if (enabled) {
+            deleted.add(shortUrl);
+            recent.remove(shortUrl);
+        }
+    }
+
+    /**
+     * Adds mappings created since the last poll to the overlay.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.index.poll-interval:PT1S}")
+    public void poll() {
+        if (!enabled || index == null) {
+            return;
+        }
+        try {
+            long from = Math.max(index.getMaxId(), polledUpTo - reorderWindow);
+            jdbcTemplate.query(SELECT_NEW_MAPPINGS, rs -> {
+                long id = rs.getLong(1);
+                String shortUrl = rs.getString(2);
+                if (!deleted.contains(shortUrl)) {
+                    recent.putIfAbsent(shortUrl, new ResolvedUrlDTO(id, rs.getString(3)));
+                }
+                if (id > polledUpTo) {
+                    polledUpTo = id;
+                }
+            }, from);
+        } catch (DataAccessException e) {
+            log.warn("Failed to poll new url mappings for the short code index", e);
+        }
+    }
+
+    /**
+     * Rebuilds the index file from {@code url_mapping} and swaps it in.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.index.rebuild-interval:PT15M}",
+            initialDelayString = "${shortlink.index.rebuild-interval:PT15M}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Set<String> deletedBeforeBuild = new HashSet<>(deleted);
+            long started = System.nanoTime();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            long[] countAndMaxId = jdbcTemplate.queryForObject(COUNT_MAPPINGS,
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            long maxId = countAndMaxId[1];
+            long entries;
+            try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(tmp, countAndMaxId[0])) {
+                // Inside a transaction so PostgreSQL honours the fetch size instead of buffering every row.
+                readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(SELECT_MAPPINGS);
+                    statement.setFetchSize(10_000);
+                    statement.setLong(1, maxId);
+                    return statement;
+                }, rs -> {
+                    try {
+                        builder.add(rs.getLong(1), rs.getString(2), rs.getString(3));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                builder.finish(maxId);
+                entries = builder.getEntryCount();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            ShortCodeIndex previous = index;
+            ShortCodeIndex rebuilt = ShortCodeIndex.open(file);
+            index = rebuilt;
+            if (polledUpTo < maxId) {
+                polledUpTo = maxId;
+            }
+            recent.values().removeIf(resolved -> resolved.getId() <= maxId);
+            deleted.removeAll(deletedBeforeBuild);
+            if (previous != null) {
+                previous.close();
+            }
+            log.info("Rebuilt short code index {} with {} entries in {} ms", file, entries,
+                    Duration.ofNanos(System.nanoTime() - started).toMillis());
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to rebuild short code index {}", file, e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.andreibel.shortlink.service.shortcode;
+
+/**
+ * Encodes non-negative numbers with the 62 URL-safe alphanumeric characters.
+ */
+public final class Base62 {
+
+    /**
+     * The alphabet used for short URL tokens.
+     */
+    public static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    private static final int BASE = ALPHABET.length();
+
+    private Base62() {
+    }
+
+    /**
+     * Encodes a number, left-padding the result with the zero digit up to a minimum length.
+     *
+     * @param value     the non-negative number to encode
+     * @param minLength the minimum length of the result
+     * @return the encoded number
+     */
+    public static String encode(long value, int minLength) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value " + value);
+        }
+        char[] buffer = new char[Math.max(11, minLength)];
+        int pos = buffer.length;
+        do {
+            buffer[--pos] = ALPHABET.charAt((int) (value % BASE));
+            value /= BASE;
+        } while (value > 0);
+        while (buffer.length - pos < minLength) {
+            buffer[--pos] = ALPHABET.charAt(0);
+        }
+        return new String(buffer, pos, buffer.length - pos);
+    }
+}
@@ -0,0 +1,110 @@
+package com.andreibel.shortlink.service.shortcode;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates tokens from a database sequence reserved in blocks.
+ * <p>
+ * A node reserves {@code shortlink.codes.block-size} consecutive ids at a time in the
+ * {@code short_code_sequence} table and hands them out from memory with a single atomic
+ * increment, so the database is only contacted once per block. Each id is mapped through
+ * a fixed bijection of the 8-character code space before being encoded in base62, which
+ * keeps tokens unique while making consecutive ones look unrelated.
+ */
+@Component
+@ConditionalOnProperty(name = "shortlink.codes.strategy", havingValue = "block", matchIfMissing = true)
+public class BlockSequenceShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final String SEQUENCE_NAME = "url_mapping.short_url";
+    private static final int LENGTH = 8;
+    /**
+     * Size of the 8-character code space, 62^8.
+     */
+    private static final long CODE_SPACE = 218_340_105_584_896L;
+    /**
+     * Coprime with 62^8, so {@code id * MULTIPLIER + OFFSET} is a bijection of the code space.
+     * Small enough that the product never overflows a long.
+     */
+    private static final long MULTIPLIER = 20_011L;
+    private static final long OFFSET = 137_438_953_473L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+    private volatile Block block = new Block(0, 0);
+
+    /**
+     * Creates the generator.
+     *
+     * @param jdbcTemplate       the JDBC template used to reserve blocks
+     * @param transactionManager the transaction manager; blocks are reserved in their own transaction
+     * @param blockSize          the number of ids reserved per database round trip
+     */
+    public BlockSequenceShortCodeGenerator(JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${shortlink.codes.block-size:1000}") int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public String nextCode() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return Base62.encode(Math.floorMod(id % CODE_SPACE * MULTIPLIER + OFFSET, CODE_SPACE), LENGTH);
+            }
+            refill(current);
+        }
+    }
+
+    private synchronized void refill(Block exhausted) {
+        // Another thread may already have replaced the block while this one waited.
+        if (block == exhausted) {
+            block = reserve();
+        }
+    }
+
+    private Block reserve() {
+        try {
+            return transactionTemplate.execute(status -> reserveInTransaction());
+        } catch (DuplicateKeyException e) {
+            // Another node created the sequence row first; reserve from it.
+            return transactionTemplate.execute(status -> reserveInTransaction());
+        }
+    }
+
+    private Block reserveInTransaction() {
+        int updated = jdbcTemplate.update(
+                "update short_code_sequence set next_value = next_value + ? where name = ?", blockSize, SEQUENCE_NAME);
+        if (updated == 0) {
+            jdbcTemplate.update(
+                    "insert into short_code_sequence (name, next_value) values (?, ?)", SEQUENCE_NAME, (long) blockSize);
+        }
+        Long end = jdbcTemplate.queryForObject(
+                "select next_value from short_code_sequence where name = ?", Long.class, SEQUENCE_NAME);
+        return new Block(end - blockSize, end);
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
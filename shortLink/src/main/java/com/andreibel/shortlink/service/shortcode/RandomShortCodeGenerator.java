@@ -0,0 +1,29 @@
+package com.andreibel.shortlink.service.shortcode;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates 8 random alphanumeric characters per token.
+ * <p>
+ * Tokens are not guaranteed to be unique; a collision is caught by the unique constraint
+ * on {@code url_mapping.short_url} and the caller retries.
+ */
+@Component
+@ConditionalOnProperty(name = "shortlink.codes.strategy", havingValue = "random")
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final int LENGTH = 8;
+
+    @Override
+    public String nextCode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] code = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            code[i] = Base62.ALPHABET.charAt(random.nextInt(Base62.ALPHABET.length()));
+        }
+        return new String(code);
+    }
+}
@@ -0,0 +1,19 @@
+package com.andreibel.shortlink.service.shortcode;
+
+/**
+ * Strategy for generating the short URL tokens of new mappings.
+ * <p>
+ * Implementations must be thread-safe. The active implementation is chosen with the
+ * {@code shortlink.codes.strategy} property. The unique constraint on
+ * {@code url_mapping.short_url} remains the final guard, since tokens created by an
+ * earlier strategy may still occupy part of the code space.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * Generates the next short URL token.
+     *
+     * @return a new short URL token
+     */
+    String nextCode();
+}
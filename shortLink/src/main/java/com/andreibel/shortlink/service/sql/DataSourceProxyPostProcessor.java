@@ -0,0 +1,58 @@
+package com.andreibel.shortlink.service.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Wraps the application {@link DataSource} in a datasource-proxy that reports every statement
+ * to a {@link SlowQueryListener}.
+ * <p>
+ * The connection pool is left untouched; only the statements handed out by it are proxied.
+ * Disable with {@code shortlink.sql.monitoring.enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "shortlink.sql.monitoring.enabled", havingValue = "true", matchIfMissing = true)
+public class DataSourceProxyPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Duration slowQueryThreshold;
+    private final boolean logParameterValues;
+
+    /**
+     * Creates the post processor.
+     *
+     * @param meterRegistry      the registry the slow query counter is published to, resolved lazily
+     * @param slowQueryThreshold the minimum execution time of a logged statement
+     * @param logParameterValues whether bind values are logged, not just their types
+     */
+    public DataSourceProxyPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                        @Value("${shortlink.sql.slow-query-threshold:PT0.1S}") Duration slowQueryThreshold,
+                                        @Value("${shortlink.sql.log-parameter-values:false}") boolean logParameterValues) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.logParameterValues = logParameterValues;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        Counter slowQueries = Counter.builder("shortlink.sql.slow")
+                .description("JDBC statements slower than shortlink.sql.slow-query-threshold")
+                .register(meterRegistry.getObject());
+        return ProxyDataSourceBuilder.create(dataSource)
+                .name(beanName)
+                .listener(new SlowQueryListener(slowQueryThreshold, logParameterValues, slowQueries))
+                .build();
+    }
+}
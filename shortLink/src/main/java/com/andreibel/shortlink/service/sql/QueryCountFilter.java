@@ -0,0 +1,99 @@
+package com.andreibel.shortlink.service.sql;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the JDBC statements each request executes and flags likely N+1 query patterns.
+ * <p>
+ * Runs first in the filter chain so statements issued while authenticating are included.
+ * The count is published per endpoint as {@code shortlink.sql.statements.per.request}, keyed
+ * by method and URI pattern to keep cardinality bounded. A request issuing more than
+ * {@code shortlink.sql.max-statements-per-request} statements increments
+ * {@code shortlink.sql.n-plus-one} and is logged, the first time and every 1000th time per endpoint.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "shortlink.sql.monitoring.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the filter.
+     *
+     * @param meterRegistry the registry to publish per-endpoint statement counts to
+     * @param maxStatements the number of statements above which a request is flagged
+     */
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            @Value("${shortlink.sql.max-statements-per-request:10}") int maxStatements) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestQueryStats stats = RequestQueryStats.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.close();
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, RequestQueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String method = request.getMethod();
+        String uri = pattern != null ? pattern.toString() : "UNMAPPED";
+        Endpoint endpoint = endpoints.computeIfAbsent(method + " " + uri, key -> new Endpoint(method, uri));
+        endpoint.statements.record(stats.getStatements());
+        if (stats.getStatements() > maxStatements) {
+            endpoint.flagged.increment();
+            long flagged = (long) endpoint.flagged.count();
+            if (flagged % 1000 == 1) {
+                log.warn("possible_n_plus_one endpoint=\"{} {}\" request=\"{}\" statements={} sql_ms={} max_statements={} occurrences={}",
+                        method, uri, stats.getRequest(), stats.getStatements(), stats.getElapsedMillis(), maxStatements, flagged);
+            }
+        }
+    }
+
+    private final class Endpoint {
+        private final DistributionSummary statements;
+        private final Counter flagged;
+
+        private Endpoint(String method, String uri) {
+            this.statements = DistributionSummary.builder("shortlink.sql.statements.per.request")
+                    .description("JDBC statements executed per request")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .register(meterRegistry);
+            this.flagged = Counter.builder("shortlink.sql.n-plus-one")
+                    .description("Requests that executed more than shortlink.sql.max-statements-per-request statements")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.andreibel.shortlink.service.sql;
+
+import lombok.Getter;
+
+/**
+ * Statements executed by the current request.
+ * <p>
+ * {@link QueryCountFilter} opens a scope per request and {@link SlowQueryListener} adds every
+ * statement executed on the request thread to it. Statements executed outside a request (the
+ * click writer, scheduled jobs) are not counted.
+ */
+@Getter
+public final class RequestQueryStats {
+
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+
+    private final String request;
+    /**
+     * Statements executed so far; a batch counts once per parameter set.
+     */
+    private int statements;
+    private long elapsedMillis;
+
+    private RequestQueryStats(String request) {
+        this.request = request;
+    }
+
+    /**
+     * Starts counting statements on the current thread.
+     *
+     * @param request a description of the request, used in log messages
+     * @return the new statistics
+     */
+    static RequestQueryStats open(String request) {
+        RequestQueryStats stats = new RequestQueryStats(request);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Stops counting statements on the current thread.
+     */
+    static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the statistics of the request running on the current thread.
+     *
+     * @return the statistics, or null outside a request
+     */
+    static RequestQueryStats current() {
+        return CURRENT.get();
+    }
+
+    void add(int count, long elapsedMillis) {
+        this.statements += count;
+        this.elapsedMillis += elapsedMillis;
+    }
+}
@@ -0,0 +1,139 @@
+package com.andreibel.shortlink.service.sql;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Counts every JDBC statement towards the current request and logs the slow ones.
+ * <p>
+ * Statements slower than the threshold are logged as one {@code key=value} line with the
+ * elapsed time, the SQL, a summary of the bind parameters, the application frame that issued
+ * the statement and the request it belongs to. Bind values are only logged when explicitly
+ * enabled; otherwise only their types are.
+ */
+@Slf4j
+class SlowQueryListener implements QueryExecutionListener {
+
+    private static final String BASE_PACKAGE = "com.andreibel.shortlink.";
+    private static final String OWN_PACKAGE = SlowQueryListener.class.getPackageName() + ".";
+    private static final int MAX_SQL_LENGTH = 1000;
+    private static final int MAX_VALUE_LENGTH = 32;
+
+    private final long thresholdMillis;
+    private final boolean logParameterValues;
+    private final Counter slowQueries;
+
+    /**
+     * Creates the listener.
+     *
+     * @param threshold          the minimum execution time of a logged statement
+     * @param logParameterValues whether bind values are logged, not just their types
+     * @param slowQueries        the counter incremented for every slow statement
+     */
+    SlowQueryListener(Duration threshold, boolean logParameterValues, Counter slowQueries) {
+        this.thresholdMillis = threshold.toMillis();
+        this.logParameterValues = logParameterValues;
+        this.slowQueries = slowQueries;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        int statements = execInfo.isBatch() ? Math.max(execInfo.getBatchSize(), 1) : queryInfoList.size();
+        RequestQueryStats stats = RequestQueryStats.current();
+        if (stats != null) {
+            stats.add(statements, execInfo.getElapsedTime());
+        }
+        if (execInfo.getElapsedTime() < thresholdMillis) {
+            return;
+        }
+        slowQueries.increment();
+        if (!log.isWarnEnabled()) {
+            return;
+        }
+        for (QueryInfo query : queryInfoList) {
+            log.warn("slow_query elapsed_ms={} success={} batch_size={} call_site={} request=\"{}\" request_statements={} sql=\"{}\" params={}",
+                    execInfo.getElapsedTime(),
+                    execInfo.isSuccess(),
+                    execInfo.isBatch() ? execInfo.getBatchSize() : 0,
+                    callSite(),
+                    stats != null ? stats.getRequest() : "-",
+                    stats != null ? stats.getStatements() : 0,
+                    abbreviate(query.getQuery().replaceAll("\\s+", " ").trim(), MAX_SQL_LENGTH),
+                    summarize(query.getParametersList()));
+        }
+    }
+
+    /**
+     * Summarizes the first parameter set of a statement, e.g. {@code [1:Long, 2:String(12)] x500}
+     * for a batch of 500 parameter sets.
+     */
+    private String summarize(List<List<ParameterSetOperation>> parameterSets) {
+        if (parameterSets.isEmpty()) {
+            return "[]";
+        }
+        StringBuilder summary = new StringBuilder("[");
+        List<ParameterSetOperation> first = parameterSets.getFirst().stream()
+                .sorted(Comparator.comparing(op -> String.valueOf(op.getArgs()[0])))
+                .toList();
+        for (ParameterSetOperation operation : first) {
+            Object[] args = operation.getArgs();
+            if (summary.length() > 1) {
+                summary.append(", ");
+            }
+            summary.append(args[0]).append(':');
+            if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+                summary.append("null");
+            } else if (args.length > 1) {
+                summary.append(describe(args[1]));
+            }
+        }
+        summary.append(']');
+        if (parameterSets.size() > 1) {
+            summary.append(" x").append(parameterSets.size());
+        }
+        return summary.toString();
+    }
+
+    private String describe(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (logParameterValues) {
+            return value instanceof CharSequence
+                    ? "'" + abbreviate(value.toString(), MAX_VALUE_LENGTH) + "'"
+                    : abbreviate(value.toString(), MAX_VALUE_LENGTH);
+        }
+        String type = value.getClass().getSimpleName();
+        return value instanceof CharSequence text ? type + "(" + text.length() + ")" : type;
+    }
+
+    /**
+     * Returns the innermost application frame outside this package, skipping generated proxies.
+     */
+    private static String callSite() {
+        Optional<StackWalker.StackFrame> frame = StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith(BASE_PACKAGE))
+                .filter(f -> !f.getClassName().startsWith(OWN_PACKAGE))
+                .filter(f -> !f.getClassName().contains("$$"))
+                .findFirst());
+        return frame.map(f -> f.getClassName().substring(BASE_PACKAGE.length()) + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse("-");
+    }
+
+    private static String abbreviate(String text, int maxLength) {
+        return text.length() <= maxLength ? text : text.substring(0, maxLength) + "...";
+    }
+}
@@ -0,0 +1,275 @@
+package com.andreibel.shortlink.service.toplinks;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate heavy hitters over a sliding time window.
+ * <p>
+ * The window is split into {@code slotCount} slots of {@code slotMillis}; each slot has its own
+ * Count-Min Sketch of {@value #DEPTH} rows and a small open-addressed table of candidate ids.
+ * {@link #record(long, long)} increments one counter per row of the current slot and offers the
+ * id to the slot's candidates, replacing the probed candidate with the lowest estimate if the
+ * new id's estimate is higher. It does a bounded number of atomic operations and never
+ * allocates. Memory is fixed by the sketch width and candidate capacity, whatever the number of ids.
+ * <p>
+ * {@link #top(long, int)} sums the sketches of the slots in the window, so the window slides by
+ * one slot at a time. Estimates never undercount; with probability {@code 1 - e^-4} they
+ * overcount by at most {@code e / width} of the clicks in the window. The ring holds one slot
+ * more than the window so {@link #rotate(long)} can clear the next slot before it starts.
+ */
+public final class SlidingHeavyHitters {
+
+    /**
+     * Number of hash rows of each Count-Min Sketch.
+     */
+    public static final int DEPTH = 4;
+
+    private static final long[] SEEDS = {
+            0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0xd6e8feb86659fd93L
+    };
+    private static final int PROBES = 4;
+
+    private final long slotMillis;
+    private final int slotCount;
+    private final int ringSize;
+    private final int width;
+    private final int capacity;
+    private final AtomicIntegerArray counters;
+    private final AtomicLongArray candidates;
+    private final AtomicLongArray slotEpochs;
+    private long clearedEpoch;
+
+    /**
+     * Creates an empty tracker.
+     *
+     * @param slotMillis the length of one slot in milliseconds
+     * @param slotCount  the number of slots in the window
+     * @param width      the number of counters per sketch row, a power of two
+     * @param capacity   the number of candidate ids kept per slot, a power of two
+     * @param nowMillis  the current time in milliseconds
+     */
+    public SlidingHeavyHitters(long slotMillis, int slotCount, int width, int capacity, long nowMillis) {
+        if (Integer.bitCount(width) != 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Sketch width and candidate capacity must be powers of two");
+        }
+        this.slotMillis = slotMillis;
+        this.slotCount = slotCount;
+        this.ringSize = slotCount + 1;
+        this.width = width;
+        this.capacity = capacity;
+        this.counters = new AtomicIntegerArray(ringSize * DEPTH * width);
+        this.candidates = new AtomicLongArray(ringSize * capacity);
+        this.slotEpochs = new AtomicLongArray(ringSize);
+        long epoch = nowMillis / slotMillis;
+        for (int i = 0; i < ringSize; i++) {
+            slotEpochs.set(i, Long.MIN_VALUE);
+        }
+        slotEpochs.set(slot(epoch), epoch);
+        this.clearedEpoch = epoch;
+        rotate(nowMillis);
+    }
+
+    /**
+     * Counts one occurrence of an id.
+     *
+     * @param id        the id, zero or positive
+     * @param nowMillis the current time in milliseconds
+     */
+    public void record(long id, long nowMillis) {
+        int slot = slot(nowMillis / slotMillis);
+        int base = slot * DEPTH * width;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(base + row * width + index(id, row)));
+        }
+        offer(slot, id, estimate);
+    }
+
+    /**
+     * Clears the slots that are about to start.
+     * <p>
+     * Must be called at least once per slot; a slot that is not cleared in time keeps counting
+     * on top of the clicks it held one full ring earlier.
+     *
+     * @param nowMillis the current time in milliseconds
+     */
+    public synchronized void rotate(long nowMillis) {
+        long next = nowMillis / slotMillis + 1;
+        for (long epoch = Math.max(clearedEpoch + 1, next - slotCount); epoch <= next; epoch++) {
+            int slot = slot(epoch);
+            int base = slot * DEPTH * width;
+            for (int i = 0; i < DEPTH * width; i++) {
+                counters.set(base + i, 0);
+            }
+            for (int i = 0; i < capacity; i++) {
+                candidates.set(slot * capacity + i, 0);
+            }
+            slotEpochs.set(slot, epoch);
+        }
+        clearedEpoch = Math.max(clearedEpoch, next);
+    }
+
+    /**
+     * Returns the ids with the highest estimated counts in the window ending now.
+     *
+     * @param nowMillis the current time in milliseconds
+     * @param limit     the maximum number of ids to return
+     * @return the estimates, highest first
+     */
+    public Snapshot top(long nowMillis, int limit) {
+        long epoch = nowMillis / slotMillis;
+        List<Integer> window = new ArrayList<>(slotCount);
+        for (int slot = 0; slot < ringSize; slot++) {
+            long slotEpoch = slotEpochs.get(slot);
+            if (slotEpoch <= epoch && slotEpoch > epoch - slotCount) {
+                window.add(slot);
+            }
+        }
+
+        long total = 0;
+        Set<Long> ids = new HashSet<>();
+        for (int slot : window) {
+            int base = slot * DEPTH * width;
+            for (int i = 0; i < width; i++) {
+                total += counters.get(base + i);
+            }
+            for (int i = 0; i < capacity; i++) {
+                long value = candidates.get(slot * capacity + i);
+                if (value != 0) {
+                    ids.add(value - 1);
+                }
+            }
+        }
+
+        PriorityQueue<Estimate> heap = new PriorityQueue<>(Comparator.comparingLong(Estimate::getCount));
+        for (long id : ids) {
+            long count = Long.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                int offset = row * width + index(id, row);
+                long sum = 0;
+                for (int slot : window) {
+                    sum += counters.get(slot * DEPTH * width + offset);
+                }
+                count = Math.min(count, sum);
+            }
+            if (count == 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(new Estimate(id, count));
+            } else if (limit > 0 && heap.peek().count < count) {
+                heap.poll();
+                heap.add(new Estimate(id, count));
+            }
+        }
+        List<Estimate> top = new ArrayList<>(heap);
+        top.sort(Comparator.comparingLong(Estimate::getCount).reversed());
+        return new Snapshot(total, top);
+    }
+
+    /**
+     * Returns the length of the window.
+     *
+     * @return the window length in milliseconds
+     */
+    public long getWindowMillis() {
+        return slotMillis * slotCount;
+    }
+
+    private void offer(int slot, long id, int estimate) {
+        long value = id + 1;
+        int base = slot * capacity;
+        int start = (int) mix(id) & (capacity - 1);
+        int victim = -1;
+        long victimValue = 0;
+        int victimEstimate = estimate;
+        for (int probe = 0; probe < PROBES; probe++) {
+            int position = base + ((start + probe) & (capacity - 1));
+            long current = candidates.get(position);
+            if (current == value) {
+                return;
+            }
+            if (current == 0) {
+                if (candidates.compareAndSet(position, 0, value)) {
+                    return;
+                }
+                current = candidates.get(position);
+                if (current == value) {
+                    return;
+                }
+            }
+            int currentEstimate = estimate(slot, current - 1);
+            if (currentEstimate < victimEstimate) {
+                victim = position;
+                victimValue = current;
+                victimEstimate = currentEstimate;
+            }
+        }
+        if (victim >= 0) {
+            // Losing the race to another replacement is fine; the id is offered again on its next click.
+            candidates.compareAndSet(victim, victimValue, value);
+        }
+    }
+
+    private int estimate(int slot, long id) {
+        int base = slot * DEPTH * width;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(base + row * width + index(id, row)));
+        }
+        return estimate;
+    }
+
+    private int slot(long epoch) {
+        return (int) Math.floorMod(epoch, (long) ringSize);
+    }
+
+    private int index(long id, int row) {
+        return (int) (mix(id ^ SEEDS[row]) >>> 32) & (width - 1);
+    }
+
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return x;
+    }
+
+    /**
+     * The estimated count of one id.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Estimate {
+        private final long id;
+        private final long count;
+    }
+
+    /**
+     * The heavy hitters of a window.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Snapshot {
+        /**
+         * Exact number of occurrences recorded in the window.
+         */
+        private final long total;
+        /**
+         * The ids with the highest estimates, highest first.
+         */
+        private final List<Estimate> top;
+    }
+}
@@ -0,0 +1,188 @@
+package com.andreibel.shortlink.service.toplinks;
+
+import com.andreibel.shortlink.dtos.TopLinkDTO;
+import com.andreibel.shortlink.dtos.TopLinksDTO;
+import com.andreibel.shortlink.dtos.UrlMappingDTO;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the most clicked links of the last five minutes and the last hour on this instance.
+ * <p>
+ * Every redirect is recorded in one {@link SlidingHeavyHitters} per {@link Window}; recording is
+ * constant time and allocation-free, and the memory used is fixed by
+ * {@code shortlink.top-links.sketch-width} and {@code shortlink.top-links.candidates}.
+ * A scheduled tick, more frequent than the shortest slot, clears upcoming slots and refreshes
+ * the snapshot behind the {@code shortlink.links.top.clicks} gauges, which publish the
+ * estimated clicks of the top ranks per window. Counts are per instance; sum them across instances for a fleet-wide view.
+ */
+@Service
+public class TopLinksService {
+
+    /**
+     * Number of ranks published as gauges per window.
+     */
+    private static final int GAUGE_RANKS = 10;
+
+    /**
+     * A sliding window the top links are tracked over.
+     */
+    @Getter
+    public enum Window {
+        /**
+         * The last five minutes, sliding by 30 seconds.
+         */
+        FIVE_MINUTES("5m", Duration.ofSeconds(30), 10),
+        /**
+         * The last hour, sliding by 5 minutes.
+         */
+        HOUR("1h", Duration.ofMinutes(5), 12);
+
+        private final String label;
+        private final Duration slot;
+        private final int slots;
+
+        Window(String label, Duration slot, int slots) {
+            this.label = label;
+            this.slot = slot;
+            this.slots = slots;
+        }
+
+        /**
+         * Returns the window with a label.
+         *
+         * @param label {@code 5m} or {@code 1h}
+         * @return the window
+         * @throws IllegalArgumentException if no window has that label
+         */
+        public static Window fromLabel(String label) {
+            for (Window window : values()) {
+                if (window.label.equalsIgnoreCase(label)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown window: " + label);
+        }
+    }
+
+    private final UrlMappingRepository urlMappingRepository;
+    private final boolean enabled;
+    /**
+     * Trackers indexed by {@link Window#ordinal()}; an array so recording allocates no iterator.
+     */
+    private final SlidingHeavyHitters[] trackers = new SlidingHeavyHitters[Window.values().length];
+    private final AtomicReferenceArray<SlidingHeavyHitters.Snapshot> snapshots =
+            new AtomicReferenceArray<>(Window.values().length);
+
+    /**
+     * Creates the top links service.
+     *
+     * @param urlMappingRepository used to describe the top links
+     * @param enabled              whether redirects are tracked
+     * @param sketchWidth          the number of counters per sketch row, a power of two
+     * @param candidates           the number of candidate links kept per slot, a power of two
+     * @param meterRegistry        the registry to publish the top link gauges to
+     */
+    public TopLinksService(UrlMappingRepository urlMappingRepository,
+                           @Value("${shortlink.top-links.enabled:true}") boolean enabled,
+                           @Value("${shortlink.top-links.sketch-width:2048}") int sketchWidth,
+                           @Value("${shortlink.top-links.candidates:512}") int candidates,
+                           MeterRegistry meterRegistry) {
+        this.urlMappingRepository = urlMappingRepository;
+        this.enabled = enabled;
+        long now = System.currentTimeMillis();
+        for (Window window : Window.values()) {
+            trackers[window.ordinal()] = new SlidingHeavyHitters(window.slot.toMillis(), window.slots, sketchWidth, candidates, now);
+            snapshots.set(window.ordinal(), new SlidingHeavyHitters.Snapshot(0, List.of()));
+            if (!enabled) {
+                continue;
+            }
+            String tag = window.label;
+            Gauge.builder("shortlink.links.window.clicks", this, service -> service.snapshots.get(window.ordinal()).getTotal())
+                    .description("Redirects in the window")
+                    .tag("window", tag)
+                    .register(meterRegistry);
+            for (int rank = 1; rank <= GAUGE_RANKS; rank++) {
+                int index = rank - 1;
+                Gauge.builder("shortlink.links.top.clicks", this, service -> {
+                            List<SlidingHeavyHitters.Estimate> top = service.snapshots.get(window.ordinal()).getTop();
+                            return index < top.size() ? top.get(index).getCount() : 0;
+                        })
+                        .description("Estimated redirects of the link at this rank in the window")
+                        .tag("window", tag)
+                        .tag("rank", Integer.toString(rank))
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    /**
+     * Counts a redirect to a link.
+     *
+     * @param urlMappingId the id of the link
+     */
+    public void record(long urlMappingId) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (SlidingHeavyHitters tracker : trackers) {
+            tracker.record(urlMappingId, now);
+        }
+    }
+
+    /**
+     * Clears upcoming window slots and refreshes the gauge snapshot.
+     */
+    @Scheduled(fixedRateString = "${shortlink.top-links.refresh-interval:PT5S}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < trackers.length; i++) {
+            trackers[i].rotate(now);
+            snapshots.set(i, trackers[i].top(now, GAUGE_RANKS));
+        }
+    }
+
+    /**
+     * Returns the most clicked links of a window.
+     *
+     * @param window the window
+     * @param limit  the maximum number of links to return
+     * @return the total clicks in the window and the top links, most clicked first
+     */
+    public TopLinksDTO getTopLinks(Window window, int limit) {
+        SlidingHeavyHitters.Snapshot snapshot = trackers[window.ordinal()].top(System.currentTimeMillis(), limit);
+        List<Long> ids = snapshot.getTop().stream().map(SlidingHeavyHitters.Estimate::getId).toList();
+        Map<Long, UrlMappingDTO> mappings = ids.isEmpty() ? Map.of()
+                : urlMappingRepository.findDtosByIds(ids).stream()
+                        .collect(Collectors.toMap(UrlMappingDTO::getId, Function.identity()));
+
+        List<TopLinkDTO> links = new ArrayList<>(ids.size());
+        for (SlidingHeavyHitters.Estimate estimate : snapshot.getTop()) {
+            UrlMappingDTO mapping = mappings.get(estimate.getId());
+            if (mapping != null) {
+                // Deleted links are skipped.
+                links.add(new TopLinkDTO(mapping.getId(), mapping.getShortUrl(), mapping.getOriginalUrl(),
+                        mapping.getUsername(), estimate.getCount()));
+            }
+        }
+        return new TopLinksDTO(window.label, window.slot.multipliedBy(window.slots).toSeconds(),
+                snapshot.getTotal(), links);
+    }
+}
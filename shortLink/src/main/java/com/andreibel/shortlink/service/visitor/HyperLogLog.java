@@ -0,0 +1,264 @@
+package com.andreibel.shortlink.service.visitor;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct 64-bit hashes added to it.
+ * <p>
+ * Uses 2<sup>12</sup> one-byte registers, so a sketch never exceeds 4 KB and its estimates
+ * have a standard error of about 1.6%. Sketches merge by taking the larger value of each
+ * register; merging is commutative and idempotent, so the union of any set of sketches
+ * (days, links, instances) can be estimated, and adding the same sketch twice changes nothing.
+ * Small cardinalities use the linear counting correction.
+ * <p>
+ * A new sketch is sparse: it keeps only its non-zero registers, as a sorted array of
+ * (index, rank) entries, and is promoted to the full register array once it holds
+ * {@value #SPARSE_LIMIT} of them. Most links see few visitors a day, so most sketches stay a
+ * few dozen bytes. Both forms give the same estimates. {@link #toBytes()} likewise stores
+ * sketches with few non-zero registers as (index, rank) pairs and switches to the plain register
+ * array once that would be larger. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+    /**
+     * Number of hash bits selecting a register.
+     */
+    public static final int PRECISION = 12;
+
+    /**
+     * Largest serialized size of a sketch in bytes.
+     */
+    public static final int MAX_SERIALIZED_SIZE = 1 + (1 << PRECISION);
+
+    /**
+     * Number of sparse entries after which a sketch is promoted to the dense form, where the
+     * entries would take half the memory of the registers.
+     */
+    static final int SPARSE_LIMIT = (1 << PRECISION) / 8;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final byte DENSE = 1;
+    private static final byte SPARSE = 2;
+    private static final int SPARSE_ENTRY_SIZE = 3;
+    private static final int INITIAL_SPARSE_CAPACITY = 4;
+
+    /**
+     * The registers, or null while the sketch is sparse.
+     */
+    private byte[] registers;
+    /**
+     * The non-zero registers while the sketch is sparse, as {@code index << 8 | rank} sorted by index.
+     */
+    private int[] sparse = new int[INITIAL_SPARSE_CAPACITY];
+    private int sparseSize;
+
+    /**
+     * Adds a hash to the sketch.
+     * <p>
+     * The hash must be uniformly distributed over all 64 bits.
+     *
+     * @param hash the hash of the element
+     */
+    public void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // The guard bit caps the rank at 64 - PRECISION + 1, which always fits in a byte.
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        raise(index, rank);
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param other the sketch to merge
+     * @return this sketch
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                raise(other.sparse[i] >>> 8, other.sparse[i] & 0xff);
+            }
+            return this;
+        }
+        if (registers == null) {
+            promote();
+        }
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns whether nothing was added to the sketch.
+     *
+     * @return true if every register is zero
+     */
+    public boolean isEmpty() {
+        if (registers == null) {
+            return sparseSize == 0;
+        }
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the number of distinct hashes added to the sketch.
+     *
+     * @return the estimated cardinality
+     */
+    public long estimate() {
+        double sum;
+        int zeros;
+        if (registers == null) {
+            zeros = REGISTERS - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0, -(sparse[i] & 0xff));
+            }
+        } else {
+            sum = 0;
+            zeros = 0;
+            for (byte register : registers) {
+                sum += Math.scalb(1.0, -register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Serializes the sketch.
+     *
+     * @return the serialized sketch, at most {@link #MAX_SERIALIZED_SIZE} bytes
+     */
+    public byte[] toBytes() {
+        if (registers == null) {
+            byte[] bytes = new byte[1 + sparseSize * SPARSE_ENTRY_SIZE];
+            bytes[0] = SPARSE;
+            int position = 1;
+            for (int i = 0; i < sparseSize; i++) {
+                int index = sparse[i] >>> 8;
+                bytes[position++] = (byte) (index >>> 8);
+                bytes[position++] = (byte) index;
+                bytes[position++] = (byte) sparse[i];
+            }
+            return bytes;
+        }
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+        if (1 + used * SPARSE_ENTRY_SIZE >= MAX_SERIALIZED_SIZE) {
+            byte[] bytes = new byte[MAX_SERIALIZED_SIZE];
+            bytes[0] = DENSE;
+            System.arraycopy(registers, 0, bytes, 1, REGISTERS);
+            return bytes;
+        }
+        byte[] bytes = new byte[1 + used * SPARSE_ENTRY_SIZE];
+        bytes[0] = SPARSE;
+        int position = 1;
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                bytes[position++] = (byte) (i >>> 8);
+                bytes[position++] = (byte) i;
+                bytes[position++] = registers[i];
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a sketch written by {@link #toBytes()}.
+     *
+     * @param bytes the serialized sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not a serialized sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes.length == MAX_SERIALIZED_SIZE && bytes[0] == DENSE) {
+            sketch.registers = Arrays.copyOfRange(bytes, 1, MAX_SERIALIZED_SIZE);
+            sketch.sparse = null;
+        } else if (bytes.length > 0 && bytes[0] == SPARSE && (bytes.length - 1) % SPARSE_ENTRY_SIZE == 0) {
+            for (int position = 1; position < bytes.length; position += SPARSE_ENTRY_SIZE) {
+                int index = ((bytes[position] & 0xff) << 8) | (bytes[position + 1] & 0xff);
+                if (index >= REGISTERS) {
+                    throw new IllegalArgumentException("Register index out of range: " + index);
+                }
+                sketch.raise(index, bytes[position + 2] & 0xff);
+            }
+        } else {
+            throw new IllegalArgumentException("Not a serialized HyperLogLog sketch");
+        }
+        return sketch;
+    }
+
+    /**
+     * Returns whether the sketch still keeps only its non-zero registers.
+     *
+     * @return true while the sketch is sparse
+     */
+    boolean isSparse() {
+        return registers == null;
+    }
+
+    private void raise(int index, int rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entryIndex = sparse[middle] >>> 8;
+            if (entryIndex < index) {
+                low = middle + 1;
+            } else if (entryIndex > index) {
+                high = middle - 1;
+            } else {
+                if (rank > (sparse[middle] & 0xff)) {
+                    sparse[middle] = index << 8 | rank;
+                }
+                return;
+            }
+        }
+        if (sparseSize == SPARSE_LIMIT) {
+            promote();
+            registers[index] = (byte) rank;
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(sparse.length * 2, SPARSE_LIMIT));
+        }
+        System.arraycopy(sparse, low, sparse, low + 1, sparseSize - low);
+        sparse[low] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private void promote() {
+        registers = new byte[REGISTERS];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+}
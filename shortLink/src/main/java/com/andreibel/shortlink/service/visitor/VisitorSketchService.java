@@ -0,0 +1,430 @@
+package com.andreibel.shortlink.service.visitor;
+
+import com.andreibel.shortlink.dtos.DailyVisitorsDTO;
+import com.andreibel.shortlink.dtos.UniqueVisitorsDTO;
+import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.ClickIngestionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Maintains the per-link, per-day {@link HyperLogLog} sketches of {@code click_daily_visitors}
+ * and answers unique-visitor queries from them.
+ * <p>
+ * A visitor is identified by a keyed SHA-256 hash of the client address and user agent; the
+ * raw values are never stored. Ingested clicks are added to in-memory sketches, which a
+ * scheduled flush merges into the table: each chunk of rows is read with {@code for update},
+ * merged register by register and written back. Because merging is idempotent, a flush that
+ * fails is simply retried with the same sketches, and instances flushing the same row never
+ * count a visitor twice. Queries merge the stored sketches of the requested days and links
+ * together with the ones still in memory, so their cost depends on the number of days and
+ * links, never on the number of clicks.
+ * <p>
+ * In-memory sketches start sparse, so a link with a handful of visitors costs a few dozen bytes.
+ * At most {@code shortlink.visitors.max-pending} (url mapping, day) sketches are kept: reaching
+ * the cap flushes early on the ingesting thread, and while the database cannot take them, the
+ * visitors of further links and days are dropped and counted in {@code shortlink.visitors.dropped}.
+ * <p>
+ * Set {@code shortlink.visitors.secret} to the same value on every instance so a visitor hashes
+ * to the same key everywhere; without it each instance draws a random key at startup.
+ */
+@Slf4j
+@Service
+public class VisitorSketchService {
+
+    private static final String SELECT_FOR_UPDATE =
+            "select url_mapping_id, click_day, sketch from click_daily_visitors " +
+            "where url_mapping_id in (%s) and click_day in (%s) for update";
+    private static final String UPDATE_SKETCH =
+            "update click_daily_visitors set sketch = ? where url_mapping_id = ? and click_day = ?";
+    private static final String INSERT_SKETCH =
+            "insert into click_daily_visitors (url_mapping_id, click_day, sketch) values (?, ?, ?)";
+    private static final String SELECT_BY_MAPPING =
+            "select url_mapping_id, click_day, sketch from click_daily_visitors " +
+            "where url_mapping_id = ? and click_day >= ? and click_day <= ?";
+    private static final String SELECT_BY_USER =
+            "select v.url_mapping_id, v.click_day, v.sketch from click_daily_visitors v " +
+            "join url_mapping m on m.id = v.url_mapping_id " +
+            "where m.user_id = ? and v.click_day >= ? and v.click_day <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UrlMappingRepository urlMappingRepository;
+    private final boolean enabled;
+    private final byte[] secret;
+    private final int flushBatchSize;
+    private final int maxPending;
+    private final Counter dropped;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object pendingLock = new Object();
+    private Map<SketchKey, HyperLogLog> pending = new HashMap<>();
+
+    /**
+     * Creates the visitor sketch service.
+     *
+     * @param jdbcTemplate         the JDBC template used to read and write sketches
+     * @param transactionTemplate  the template each flushed chunk is written in
+     * @param urlMappingRepository used to find the links of a user
+     * @param enabled              whether unique visitors are tracked
+     * @param secret               the key visitor hashes are derived with, or empty for a random one
+     * @param flushBatchSize       the maximum number of sketches merged per transaction
+     * @param maxPending           the number of pending sketches that forces a flush and above which new ones are dropped
+     * @param meterRegistry        the registry to publish the pending sketch count to
+     */
+    public VisitorSketchService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                UrlMappingRepository urlMappingRepository,
+                                @Value("${shortlink.visitors.enabled:true}") boolean enabled,
+                                @Value("${shortlink.visitors.secret:}") String secret,
+                                @Value("${shortlink.visitors.flush-batch-size:500}") int flushBatchSize,
+                                @Value("${shortlink.visitors.max-pending:10000}") int maxPending,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.urlMappingRepository = urlMappingRepository;
+        this.enabled = enabled;
+        this.flushBatchSize = flushBatchSize;
+        this.maxPending = maxPending;
+        if (secret.isBlank()) {
+            this.secret = new byte[32];
+            new SecureRandom().nextBytes(this.secret);
+            if (enabled) {
+                log.warn("shortlink.visitors.secret is not set; unique visitors are only counted per instance and restart");
+            }
+        } else {
+            this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        Gauge.builder("shortlink.visitors.pending", this, VisitorSketchService::getPendingCount)
+                .description("Visitor sketches waiting to be merged into the database")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("shortlink.visitors.dropped")
+                .description("Clicks whose visitor was not counted because too many sketches were pending")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hashes the identity of a visitor.
+     *
+     * @param address   the client address
+     * @param userAgent the {@code User-Agent} header, or null
+     * @return a non-zero 64-bit visitor hash, or 0 if unique visitors are not tracked
+     */
+    public long visitorHash(String address, String userAgent) {
+        if (!enabled) {
+            return 0;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(secret);
+        digest.update((byte) 0);
+        digest.update(String.valueOf(address).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (userAgent != null) {
+            digest.update(userAgent.getBytes(StandardCharsets.UTF_8));
+        }
+        long hash = ByteBuffer.wrap(digest.digest()).getLong();
+        // 0 marks clicks without a visitor.
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Adds the visitors of a batch of clicks to the in-memory sketches.
+     * <p>
+     * Clicks without a visitor hash are ignored. Once {@code shortlink.visitors.max-pending}
+     * sketches are pending, the sketches are flushed on the calling thread, unless a flush is
+     * already running.
+     *
+     * @param clicks the ingested clicks
+     */
+    public void addClicks(List<ClickIngestionService.PendingClick> clicks) {
+        if (!enabled) {
+            return;
+        }
+        int skipped = 0;
+        boolean full;
+        synchronized (pendingLock) {
+            for (ClickIngestionService.PendingClick click : clicks) {
+                if (click.getVisitorHash() == 0) {
+                    continue;
+                }
+                SketchKey key = new SketchKey(click.getUrlMappingId(), click.getClickDate().toLocalDate());
+                HyperLogLog sketch = pending.get(key);
+                if (sketch == null) {
+                    if (pending.size() >= maxPending) {
+                        skipped++;
+                        continue;
+                    }
+                    sketch = new HyperLogLog();
+                    pending.put(key, sketch);
+                }
+                sketch.add(click.getVisitorHash());
+            }
+            full = pending.size() >= maxPending;
+        }
+        if (skipped > 0) {
+            dropped.increment(skipped);
+        }
+        if (full && flushLock.tryLock()) {
+            try {
+                flushPending();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of (url mapping, day) sketches not yet merged into the database.
+     *
+     * @return the pending sketch count
+     */
+    public int getPendingCount() {
+        synchronized (pendingLock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Merges the in-memory sketches into {@code click_daily_visitors}.
+     */
+    @Scheduled(fixedDelayString = "${shortlink.visitors.flush-interval:PT30S}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushPending() {
+        Map<SketchKey, HyperLogLog> flushing;
+        synchronized (pendingLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            flushing = pending;
+            pending = new HashMap<>();
+        }
+        List<Map.Entry<SketchKey, HyperLogLog>> entries = new ArrayList<>(flushing.entrySet());
+        for (int from = 0; from < entries.size(); from += flushBatchSize) {
+            List<Map.Entry<SketchKey, HyperLogLog>> chunk = entries.subList(from, Math.min(from + flushBatchSize, entries.size()));
+            try {
+                writeChunk(chunk);
+            } catch (DataAccessException e) {
+                // Merging is idempotent, so the unwritten sketches are simply kept for the next flush.
+                log.error("Failed to flush {} visitor sketches", entries.size() - from, e);
+                requeue(entries.subList(from, entries.size()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Flushes pending sketches before the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Estimates the unique visitors of a URL mapping per day and over a range of days.
+     *
+     * @param urlMappingId the id of the URL mapping
+     * @param start        the first day (inclusive)
+     * @param end          the last day (inclusive)
+     * @return the estimates
+     */
+    public UniqueVisitorsDTO getUniqueVisitors(Long urlMappingId, LocalDate start, LocalDate end) {
+        Map<LocalDate, HyperLogLog> days = new TreeMap<>();
+        jdbcTemplate.query(SELECT_BY_MAPPING, rs -> {
+            mergeRow(rs, days);
+        }, urlMappingId, Date.valueOf(start), Date.valueOf(end));
+        mergePending(urlMappingId::equals, start, end, days);
+        return toDto(days);
+    }
+
+    /**
+     * Estimates the unique visitors across all URL mappings of a user per day and over a range of days.
+     * <p>
+     * A visitor of several links is counted once.
+     *
+     * @param user  the user
+     * @param start the first day (inclusive)
+     * @param end   the last day (inclusive)
+     * @return the estimates
+     */
+    public UniqueVisitorsDTO getUniqueVisitorsByUser(User user, LocalDate start, LocalDate end) {
+        Map<LocalDate, HyperLogLog> days = new TreeMap<>();
+        jdbcTemplate.query(SELECT_BY_USER, rs -> {
+            mergeRow(rs, days);
+        }, user.getId(), Date.valueOf(start), Date.valueOf(end));
+        if (getPendingCount() > 0) {
+            Set<Long> ids = new HashSet<>(urlMappingRepository.findIdsByUser(user));
+            mergePending(ids::contains, start, end, days);
+        }
+        return toDto(days);
+    }
+
+    private void writeChunk(List<Map.Entry<SketchKey, HyperLogLog>> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> merge(chunk));
+        } catch (DuplicateKeyException e) {
+            // Another instance inserted one of the rows first; now it can be locked and merged.
+            transactionTemplate.executeWithoutResult(status -> merge(chunk));
+        } catch (DataIntegrityViolationException e) {
+            // Most likely a mapping was deleted while its sketch was pending; keep the rest.
+            for (Map.Entry<SketchKey, HyperLogLog> entry : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> merge(List.of(entry)));
+                } catch (DataIntegrityViolationException skipped) {
+                    log.debug("Skipping visitor sketch of url mapping {}", entry.getKey().urlMappingId, skipped);
+                }
+            }
+        }
+    }
+
+    private void merge(List<Map.Entry<SketchKey, HyperLogLog>> chunk) {
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+        Set<Long> ids = new LinkedHashSet<>();
+        Set<LocalDate> days = new LinkedHashSet<>();
+        for (Map.Entry<SketchKey, HyperLogLog> entry : chunk) {
+            sketches.put(entry.getKey(), entry.getValue());
+            ids.add(entry.getKey().urlMappingId);
+            days.add(entry.getKey().day);
+        }
+        List<Object> args = new ArrayList<>(ids.size() + days.size());
+        args.addAll(ids);
+        days.forEach(day -> args.add(Date.valueOf(day)));
+        String sql = String.format(SELECT_FOR_UPDATE,
+                String.join(",", Collections.nCopies(ids.size(), "?")),
+                String.join(",", Collections.nCopies(days.size(), "?")));
+
+        // The query covers every id/day combination; rows of other pairs are simply not merged.
+        Set<SketchKey> existing = new HashSet<>();
+        jdbcTemplate.query(sql, rs -> {
+            SketchKey key = new SketchKey(rs.getLong(1), rs.getDate(2).toLocalDate());
+            HyperLogLog sketch = sketches.get(key);
+            if (sketch != null) {
+                existing.add(key);
+                try {
+                    sketch.merge(HyperLogLog.fromBytes(rs.getBytes(3)));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Replacing unreadable visitor sketch of url mapping {} on {}", key.urlMappingId, key.day);
+                }
+            }
+        }, args.toArray());
+
+        List<Object[]> updates = new ArrayList<>(existing.size());
+        List<Object[]> inserts = new ArrayList<>(sketches.size() - existing.size());
+        sketches.forEach((key, sketch) -> {
+            if (existing.contains(key)) {
+                updates.add(new Object[]{sketch.toBytes(), key.urlMappingId, Date.valueOf(key.day)});
+            } else {
+                inserts.add(new Object[]{key.urlMappingId, Date.valueOf(key.day), sketch.toBytes()});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SKETCH, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SKETCH, inserts);
+        }
+    }
+
+    private void requeue(List<Map.Entry<SketchKey, HyperLogLog>> entries) {
+        int lost = 0;
+        synchronized (pendingLock) {
+            for (Map.Entry<SketchKey, HyperLogLog> entry : entries) {
+                HyperLogLog sketch = pending.get(entry.getKey());
+                if (sketch != null) {
+                    sketch.merge(entry.getValue());
+                } else if (pending.size() < maxPending) {
+                    pending.put(entry.getKey(), entry.getValue());
+                } else {
+                    lost++;
+                }
+            }
+        }
+        if (lost > 0) {
+            log.warn("Dropped {} visitor sketches that could not be flushed; too many are pending", lost);
+        }
+    }
+
+    private void mergeRow(ResultSet rs, Map<LocalDate, HyperLogLog> days) throws SQLException {
+        LocalDate day = rs.getDate(2).toLocalDate();
+        try {
+            days.computeIfAbsent(day, d -> new HyperLogLog()).merge(HyperLogLog.fromBytes(rs.getBytes(3)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unreadable visitor sketch of url mapping {} on {}", rs.getLong(1), day);
+        }
+    }
+
+    private void mergePending(Predicate<Long> urlMappingIds, LocalDate start, LocalDate end,
+                              Map<LocalDate, HyperLogLog> days) {
+        synchronized (pendingLock) {
+            pending.forEach((key, sketch) -> {
+                if (urlMappingIds.test(key.urlMappingId) && !key.day.isBefore(start) && !key.day.isAfter(end)) {
+                    days.computeIfAbsent(key.day, d -> new HyperLogLog()).merge(sketch);
+                }
+            });
+        }
+    }
+
+    private static UniqueVisitorsDTO toDto(Map<LocalDate, HyperLogLog> days) {
+        HyperLogLog total = new HyperLogLog();
+        List<DailyVisitorsDTO> daily = new ArrayList<>(days.size());
+        days.forEach((day, sketch) -> {
+            total.merge(sketch);
+            daily.add(new DailyVisitorsDTO(day, sketch.estimate()));
+        });
+        return new UniqueVisitorsDTO(total.estimate(), daily);
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class SketchKey {
+        private final Long urlMappingId;
+        private final LocalDate day;
+    }
+}
@@ -0,0 +1,20 @@
+-- Builds click_daily_rollup from the existing click_event rows.
+--
+-- Run once, with the application stopped, when upgrading a database that already has clicks
+-- to a version with the daily rollup (shortlink.analytics.rollup.enabled); the application
+-- then adds every click it ingests. Fresh databases do not need this script.
+--
+-- Safe to run again or from several sessions: rows that already exist are left alone.
+
+CREATE TABLE IF NOT EXISTS click_daily_rollup (
+    url_mapping_id BIGINT NOT NULL,
+    click_day      DATE   NOT NULL,
+    click_count    BIGINT NOT NULL,
+    PRIMARY KEY (url_mapping_id, click_day),
+    FOREIGN KEY (url_mapping_id) REFERENCES url_mapping (id)
+);
+
+INSERT IGNORE INTO click_daily_rollup (url_mapping_id, click_day, click_count)
+SELECT url_mapping_id, CAST(click_date AS DATE), COUNT(*)
+FROM click_event
+GROUP BY url_mapping_id, CAST(click_date AS DATE);
@@ -0,0 +1,36 @@
+-- Moves users, url_mapping and click_event from AUTO_INCREMENT ids to pooled sequences so
+-- Hibernate can batch inserts, and keys click_daily_rollup by (url_mapping_id, click_day)
+-- if an earlier build created it with an id column.
+--
+-- Run once against an existing database BEFORE starting a version that uses sequence ids;
+-- otherwise schema update creates the sequence tables starting at 1 and new ids collide
+-- with existing rows. Fresh databases do not need this script.
+--
+-- MySQL has no sequences, so Hibernate emulates each one with a single-row table holding
+-- next_val. Each is placed at least one allocation block (allocationSize on the entity)
+-- past the current maximum id. AUTO_INCREMENT columns accept the explicitly assigned ids.
+
+CREATE TABLE IF NOT EXISTS users_seq (next_val BIGINT);
+DELETE FROM users_seq;
+INSERT INTO users_seq (next_val) SELECT COALESCE(MAX(id), 0) + 50 FROM users;
+
+CREATE TABLE IF NOT EXISTS url_mapping_seq (next_val BIGINT);
+DELETE FROM url_mapping_seq;
+INSERT INTO url_mapping_seq (next_val) SELECT COALESCE(MAX(id), 0) + 50 FROM url_mapping;
+
+CREATE TABLE IF NOT EXISTS click_event_seq (next_val BIGINT);
+DELETE FROM click_event_seq;
+INSERT INTO click_event_seq (next_val) SELECT COALESCE(MAX(id), 0) + 500 FROM click_event;
+
+-- Only databases that ran a build keying click_daily_rollup by a surrogate id need re-keying;
+-- elsewhere the table does not exist yet and schema update creates it with the composite key.
+-- MySQL has no conditional DDL outside stored programs, so the statement is chosen up front.
+SET @rekey_rollup = (
+    SELECT IF(COUNT(*) > 0,
+              'ALTER TABLE click_daily_rollup DROP INDEX uk_click_daily_rollup, DROP PRIMARY KEY, DROP COLUMN id, ADD PRIMARY KEY (url_mapping_id, click_day)',
+              'DO 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'click_daily_rollup' AND column_name = 'id');
+PREPARE rekey_rollup FROM @rekey_rollup;
+EXECUTE rekey_rollup;
+DEALLOCATE PREPARE rekey_rollup;
@@ -0,0 +1,47 @@
+-- Converts click_event into a table partitioned by month of click_date, so expired months
+-- can be detached and dropped instead of deleted row by row.
+--
+-- Optional. Run once, with the application stopped, after sequence-ids.sql. The existing
+-- rows are copied into partitions named click_event_pYYYYMM, one per month from the oldest
+-- click up to three months ahead; ClickPartitionService keeps creating upcoming months from
+-- then on. Rows outside every monthly range end up in click_event_default.
+--
+-- A partitioned table's primary key must contain the partition key, so the key becomes
+-- (id, click_date). Ids still come from click_event_seq and stay unique.
+
+BEGIN;
+
+ALTER TABLE click_event RENAME TO click_event_unpartitioned;
+ALTER INDEX IF EXISTS idx_click_event_mapping_date RENAME TO idx_click_event_unpartitioned_mapping_date;
+ALTER INDEX IF EXISTS idx_click_event_date RENAME TO idx_click_event_unpartitioned_date;
+
+CREATE TABLE click_event (
+    id             BIGINT       NOT NULL,
+    click_date     TIMESTAMP(6) NOT NULL,
+    url_mapping_id BIGINT       NOT NULL REFERENCES url_mapping (id),
+    PRIMARY KEY (id, click_date)
+) PARTITION BY RANGE (click_date);
+
+CREATE INDEX idx_click_event_mapping_date ON click_event (url_mapping_id, click_date);
+CREATE INDEX idx_click_event_date ON click_event (click_date);
+
+DO $$
+DECLARE
+    month DATE := date_trunc('month', COALESCE((SELECT MIN(click_date) FROM click_event_unpartitioned), now()));
+    last  DATE := date_trunc('month', now()) + INTERVAL '3 months';
+BEGIN
+    WHILE month <= last LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF click_event FOR VALUES FROM (%L) TO (%L)',
+                       'click_event_p' || to_char(month, 'YYYYMM'), month, month + INTERVAL '1 month');
+        month := month + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+CREATE TABLE click_event_default PARTITION OF click_event DEFAULT;
+
+INSERT INTO click_event (id, click_date, url_mapping_id)
+SELECT id, click_date, url_mapping_id FROM click_event_unpartitioned WHERE click_date IS NOT NULL;
+
+DROP TABLE click_event_unpartitioned;
+
+COMMIT;
@@ -0,0 +1,34 @@
+-- Moves users, url_mapping and click_event from IDENTITY ids to pooled sequences so
+-- Hibernate can batch inserts, and keys click_daily_rollup by (url_mapping_id, click_day)
+-- if an earlier build created it with an id column.
+--
+-- Run once against an existing database BEFORE starting a version that uses sequence ids;
+-- otherwise schema update creates the sequences starting at 1 and new ids collide with
+-- existing rows. Fresh databases do not need this script.
+--
+-- Each sequence is placed at least one allocation block (its INCREMENT BY, matching
+-- allocationSize on the entity) past the current maximum id. The identity columns are
+-- GENERATED BY DEFAULT, so they accept the explicitly assigned ids unchanged.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+SELECT setval('users_seq', COALESCE((SELECT MAX(id) FROM users), 0) + 50);
+
+CREATE SEQUENCE IF NOT EXISTS url_mapping_seq START WITH 1 INCREMENT BY 50;
+SELECT setval('url_mapping_seq', COALESCE((SELECT MAX(id) FROM url_mapping), 0) + 50);
+
+CREATE SEQUENCE IF NOT EXISTS click_event_seq START WITH 1 INCREMENT BY 500;
+SELECT setval('click_event_seq', COALESCE((SELECT MAX(id) FROM click_event), 0) + 500);
+
+-- Only databases that ran a build keying click_daily_rollup by a surrogate id need re-keying;
+-- elsewhere the table does not exist yet and schema update creates it with the composite key.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+                 AND table_name = 'click_daily_rollup'
+                 AND column_name = 'id') THEN
+        ALTER TABLE click_daily_rollup DROP CONSTRAINT IF EXISTS uk_click_daily_rollup;
+        ALTER TABLE click_daily_rollup DROP COLUMN id;
+        ALTER TABLE click_daily_rollup ADD PRIMARY KEY (url_mapping_id, click_day);
+    END IF;
+END $$;
@@ -0,0 +1,309 @@
+package com.andreibel.reactive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking, batched writer for clicks on the reactive redirect path.
+ * <p>
+ * Follows the servlet {@code ClickIngestionService}: redirects offer clicks to a bounded queue
+ * and never wait; when the queue is full the click is dropped and counted. On every flush
+ * interval the queue is drained in batches, and each batch inserts its {@code click_event}
+ * rows, adds to {@code url_mapping.click_count} and, unless disabled, upserts the daily rollup
+ * in one R2DBC transaction. Batches are written one after another, so the writer never holds
+ * more than one connection.
+ * <p>
+ * A batch rejected by a constraint, most likely because a mapping was deleted while its clicks
+ * were queued, is retried row by row and the offending clicks are skipped. Any other failure,
+ * such as the database being unreachable, puts the batch back in the queue for the next flush;
+ * a click that fails {@value #MAX_ATTEMPTS} times is dropped. Both are logged and counted in
+ * {@code shortlink.clicks.write.failures}.
+ * <p>
+ * Event ids are drawn from {@code click_event_seq} with the same pooled semantics as
+ * Hibernate, so the servlet application can insert into the same table concurrently.
+ */
+@Slf4j
+@Service
+public class ReactiveClickWriter {
+
+    /**
+     * Must match the {@code allocationSize} of {@code ClickEvent.id}.
+     */
+    private static final int ID_BLOCK_SIZE = 500;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final String NEXT_ID_BLOCK = "select nextval('click_event_seq')";
+    private static final String INSERT_EVENT =
+            "insert into click_event (id, url_mapping_id, click_date) values ($1, $2, $3)";
+    private static final String INCREMENT_CLICK_COUNT =
+            "update url_mapping set click_count = click_count + $1 where id = $2";
+    private static final String UPSERT_ROLLUP =
+            "insert into click_daily_rollup (url_mapping_id, click_day, click_count) values ($1, $2, $3) " +
+            "on conflict (url_mapping_id, click_day) do update set click_count = click_daily_rollup.click_count + excluded.click_count";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final boolean rollupEnabled;
+    private final BlockingQueue<PendingClick> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Counter requeued;
+    private final Counter skipped;
+    private final Counter abandoned;
+
+    /**
+     * Next unused id and end (inclusive) of the reserved id block; only touched by the writer.
+     */
+    private long nextId;
+    private long lastId = -1;
+    private Disposable writer;
+
+    /**
+     * Creates the writer.
+     *
+     * @param databaseClient        the R2DBC client clicks are written with
+     * @param transactionalOperator the operator each batch is written in
+     * @param rollupEnabled         whether written clicks are added to the daily rollup
+     * @param queueCapacity         the maximum number of clicks buffered in memory
+     * @param batchSize             the maximum number of clicks written per batch
+     * @param flushInterval         how often the queue is drained
+     * @param meterRegistry         the registry to publish the dropped and failed click counts to
+     */
+    public ReactiveClickWriter(DatabaseClient databaseClient,
+                               TransactionalOperator transactionalOperator,
+                               @Value("${shortlink.analytics.rollup.enabled:true}") boolean rollupEnabled,
+                               @Value("${shortlink.clicks.queue-capacity:100000}") int queueCapacity,
+                               @Value("${shortlink.clicks.batch-size:500}") int batchSize,
+                               @Value("${shortlink.clicks.flush-interval:PT1S}") Duration flushInterval,
+                               MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.rollupEnabled = rollupEnabled;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        FunctionCounter.builder("shortlink.clicks.dropped", dropped, AtomicLong::get)
+                .description("Clicks dropped because the ingestion queue was full or they could not be written")
+                .register(meterRegistry);
+        this.requeued = failures(meterRegistry, "requeued");
+        this.skipped = failures(meterRegistry, "skipped");
+        this.abandoned = failures(meterRegistry, "dropped");
+    }
+
+    /**
+     * Starts draining the queue on every flush interval.
+     */
+    @PostConstruct
+    public void start() {
+        writer = Flux.interval(flushInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> drain().onErrorResume(e -> {
+                    log.error("Failed to drain the click queue", e);
+                    return Mono.empty();
+                }), 1)
+                .subscribe(null, e -> log.error("Click writer stopped; clicks are no longer written", e));
+    }
+
+    /**
+     * Stops the periodic drain and writes every click still in the queue.
+     */
+    @PreDestroy
+    public void stop() {
+        writer.dispose();
+        try {
+            drain().block(flushInterval.multipliedBy(5));
+        } catch (RuntimeException e) {
+            log.error("Failed to write the queued click events on shutdown", e);
+        }
+        if (!queue.isEmpty()) {
+            dropped.addAndGet(queue.size());
+            queue.clear();
+        }
+        if (dropped.get() > 0) {
+            log.warn("Dropped {} click events that could not be queued or written", dropped.get());
+        }
+    }
+
+    /**
+     * Queues a click for persistence.
+     *
+     * @param urlMappingId the id of the clicked mapping
+     * @param clickDate    when the click happened
+     * @return true if the click was queued, false if it was dropped
+     */
+    public boolean record(Long urlMappingId, LocalDateTime clickDate) {
+        boolean queued = queue.offer(new PendingClick(urlMappingId, clickDate, 0));
+        if (!queued && dropped.incrementAndGet() % 10_000 == 1) {
+            log.warn("Click ingestion queue is full, dropping clicks ({} so far)", dropped.get());
+        }
+        return queued;
+    }
+
+    /**
+     * Writes the clicks queued when the drain starts; clicks put back by a failed batch wait for the next one.
+     */
+    private Mono<Void> drain() {
+        return Flux.<List<PendingClick>, Integer>generate(queue::size, (left, sink) -> {
+                    List<PendingClick> batch = new ArrayList<>(batchSize);
+                    if (left > 0) {
+                        queue.drainTo(batch, Math.min(batchSize, left));
+                    }
+                    if (batch.isEmpty()) {
+                        sink.complete();
+                    } else {
+                        sink.next(batch);
+                    }
+                    return left - batch.size();
+                })
+                .concatMap(this::write, 1)
+                .then();
+    }
+
+    private Mono<Void> write(List<PendingClick> batch) {
+        return reserveIds(batch.size())
+                .flatMap(firstId -> transactionalOperator.transactional(
+                        insertEvents(batch, firstId)
+                                .then(incrementClickCounts(batch))
+                                .then(rollupEnabled ? upsertRollups(batch) : Mono.empty())))
+                .onErrorResume(e -> {
+                    if (!(e instanceof DataIntegrityViolationException)) {
+                        log.warn("Failed to write {} click events, retrying on the next flush", batch.size(), e);
+                        requeue(batch);
+                        return Mono.empty();
+                    }
+                    if (batch.size() == 1) {
+                        log.debug("Skipping click event for url mapping {}", batch.get(0).urlMappingId, e);
+                        skipped.increment();
+                        return Mono.empty();
+                    }
+                    // Most likely a mapping was deleted while its clicks were queued; keep the rest.
+                    log.info("Batch of {} click events violated a constraint, retrying row by row", batch.size());
+                    return Flux.fromIterable(batch).concatMap(click -> write(List.of(click)), 1).then();
+                });
+    }
+
+    private void requeue(List<PendingClick> batch) {
+        int lost = 0;
+        for (PendingClick click : batch) {
+            if (click.attempts + 1 < MAX_ATTEMPTS
+                    && queue.offer(new PendingClick(click.urlMappingId, click.clickDate, click.attempts + 1))) {
+                requeued.increment();
+            } else {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            dropped.addAndGet(lost);
+            abandoned.increment(lost);
+            log.error("Dropped {} click events that could not be written", lost);
+        }
+    }
+
+    private static Counter failures(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("shortlink.clicks.write.failures")
+                .description("Clicks whose batch failed to write, by what happened to them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves {@code count} consecutive ids, fetching new sequence blocks as needed.
+     * A batch whose ids would straddle two blocks skips the rest of the first block.
+     */
+    private Mono<Long> reserveIds(int count) {
+        if (nextId + count - 1 <= lastId) {
+            long first = nextId;
+            nextId += count;
+            return Mono.just(first);
+        }
+        return databaseClient.sql(NEXT_ID_BLOCK)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(hi -> {
+                    // Hibernate's pooled optimizer hands out (hi - blockSize, hi].
+                    nextId = Math.max(1, hi - ID_BLOCK_SIZE + 1);
+                    lastId = hi;
+                    return reserveIds(count);
+                });
+    }
+
+    private Mono<Void> insertEvents(List<PendingClick> batch, long firstId) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingClick click = batch.get(i);
+            rows.add(new Object[]{firstId + i, click.urlMappingId, click.clickDate});
+        }
+        return executeBatch(INSERT_EVENT, rows);
+    }
+
+    private Mono<Void> incrementClickCounts(List<PendingClick> batch) {
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        for (PendingClick click : batch) {
+            counts.merge(click.urlMappingId, 1L, Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((urlMappingId, count) -> rows.add(new Object[]{count, urlMappingId}));
+        return executeBatch(INCREMENT_CLICK_COUNT, rows);
+    }
+
+    private Mono<Void> upsertRollups(List<PendingClick> batch) {
+        Map<Long, Map<LocalDate, Long>> counts = new LinkedHashMap<>();
+        for (PendingClick click : batch) {
+            counts.computeIfAbsent(click.urlMappingId, id -> new LinkedHashMap<>())
+                    .merge(click.clickDate.toLocalDate(), 1L, Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        counts.forEach((urlMappingId, days) ->
+                days.forEach((day, count) -> rows.add(new Object[]{urlMappingId, day, count})));
+        return executeBatch(UPSERT_ROLLUP, rows);
+    }
+
+    private Mono<Void> executeBatch(String sql, List<Object[]> rows) {
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                Object[] args = rows.get(i);
+                for (int j = 0; j < args.length; j++) {
+                    statement.bind(j, args[j]);
+                }
+            }
+            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+        }).then();
+    }
+
+    /**
+     * A click waiting to be written.
+     *
+     * @param attempts the number of failed attempts to write it so far
+     */
+    private record PendingClick(Long urlMappingId, LocalDateTime clickDate, int attempts) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.andreibel.reactive;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.ReactiveManagementWebSecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveSecurityAutoConfiguration;
+import org.springframework.boot.autoconfigure.security.reactive.ReactiveUserDetailsServiceAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+
+/**
+ * Alternate, non-blocking runtime serving only the public redirect endpoint.
+ * <p>
+ * Runs on Netty with WebFlux and R2DBC against the same PostgreSQL schema as the servlet
+ * application, so both can serve redirects side by side. It lives outside the
+ * {@code com.andreibel.shortlink} package so the servlet application never scans it.
+ * Configuration is read from {@code reactive-redirect.properties}. Built with the
+ * {@code reactive} Maven profile.
+ */
+@SpringBootApplication(exclude = {
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        HibernateJpaAutoConfiguration.class,
+        JpaRepositoriesAutoConfiguration.class,
+        ReactiveSecurityAutoConfiguration.class,
+        ReactiveUserDetailsServiceAutoConfiguration.class,
+        ReactiveManagementWebSecurityAutoConfiguration.class
+})
+public class ReactiveRedirectApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveRedirectApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .properties("spring.config.name=reactive-redirect")
+                .run(args);
+    }
+
+    /**
+     * Routes {@code GET /{shortUrl}} to the redirect handler.
+     *
+     * @param redirectHandler the handler resolving short URLs
+     * @return the router function
+     */
+    @Bean
+    public RouterFunction<ServerResponse> redirectRoutes(ReactiveRedirectHandler redirectHandler) {
+        return RouterFunctions.route(GET("/{shortUrl:[A-Za-z0-9]+}"), redirectHandler::redirect);
+    }
+}
@@ -0,0 +1,42 @@
+package com.andreibel.reactive;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Non-blocking counterpart of {@code RedirectController}.
+ * <p>
+ * Answers with a 302 to the original URL, or 404 if the short URL does not exist. The click
+ * is queued for {@link ReactiveClickWriter} and never delays the response.
+ */
+@Component
+@AllArgsConstructor
+public class ReactiveRedirectHandler {
+
+    private final ReactiveUrlResolver urlResolver;
+    private final ReactiveClickWriter clickWriter;
+
+    /**
+     * Handles a redirect request.
+     *
+     * @param request the request, with the token in the {@code shortUrl} path variable
+     * @return the redirect or not found response
+     */
+    public Mono<ServerResponse> redirect(ServerRequest request) {
+        return urlResolver.resolve(request.pathVariable("shortUrl"))
+                .flatMap(resolved -> {
+                    clickWriter.record(resolved.getId(), LocalDateTime.now());
+                    return ServerResponse.status(HttpStatus.FOUND)
+                            .header(HttpHeaders.LOCATION, resolved.getOriginalUrl())
+                            .build();
+                })
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+}
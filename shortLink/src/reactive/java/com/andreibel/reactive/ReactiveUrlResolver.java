@@ -0,0 +1,137 @@
+package com.andreibel.reactive;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Resolves short URL tokens over R2DBC, behind the same bounded cache as the servlet path.
+ * <p>
+ * Concurrent misses for a token share one query; unknown tokens are not cached.
+ * <p>
+ * With {@code shortlink.cache.shared.type=redis} the resolver subscribes to the invalidation
+ * channel the servlet instances publish deletes on, and entries live for
+ * {@code shortlink.cache.redirect.expire-after-write}. Pub/sub does not replay messages missed
+ * while disconnected, so that TTL still bounds how long a missed invalidation is served. Without
+ * the subscription nothing tells the resolver about deletes, so entries live for at most
+ * {@code shortlink.cache.redirect.unsubscribed-expire-after-write}: a deleted link keeps
+ * redirecting here for up to that long.
+ */
+@Slf4j
+@Service
+public class ReactiveUrlResolver {
+
+    private static final String FIND_RESOLVED = "select id, original_url from url_mapping where short_url = $1";
+
+    private final DatabaseClient databaseClient;
+    private final AsyncCache<String, ResolvedUrlDTO> cache;
+    private final ReactiveRedisConnectionFactory redisConnectionFactory;
+    private final String invalidationChannel;
+    private ReactiveRedisMessageListenerContainer listenerContainer;
+    private Disposable invalidations;
+
+    /**
+     * Creates the resolver and registers the cache statistics with the meter registry.
+     *
+     * @param databaseClient                the R2DBC client used on a cache miss
+     * @param maximumSize                   the maximum number of cached short URLs
+     * @param expireAfterWrite              how long an entry may be served before it is reloaded, when invalidations are received
+     * @param unsubscribedExpireAfterWrite  how long an entry may be served before it is reloaded, when they are not
+     * @param sharedCacheType               the shared cache type; invalidations are received for {@code redis}
+     * @param invalidationChannel           the pub/sub channel invalidations are broadcast on
+     * @param redisConnectionFactory        the connection factory the subscriber connects with
+     * @param meterRegistry                 the registry to publish cache metrics to
+     */
+    public ReactiveUrlResolver(DatabaseClient databaseClient,
+                               @Value("${shortlink.cache.redirect.maximum-size:100000}") long maximumSize,
+                               @Value("${shortlink.cache.redirect.expire-after-write:PT10M}") Duration expireAfterWrite,
+                               @Value("${shortlink.cache.redirect.unsubscribed-expire-after-write:PT30S}") Duration unsubscribedExpireAfterWrite,
+                               @Value("${shortlink.cache.shared.type:none}") String sharedCacheType,
+                               @Value("${shortlink.cache.shared.channel:shortlink:redirect:invalidate}") String invalidationChannel,
+                               ObjectProvider<ReactiveRedisConnectionFactory> redisConnectionFactory,
+                               MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.redisConnectionFactory = "redis".equals(sharedCacheType) ? redisConnectionFactory.getIfAvailable() : null;
+        this.invalidationChannel = invalidationChannel;
+        Duration ttl = this.redisConnectionFactory != null || expireAfterWrite.compareTo(unsubscribedExpireAfterWrite) < 0
+                ? expireAfterWrite
+                : unsubscribedExpireAfterWrite;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "redirect");
+    }
+
+    /**
+     * Subscribes to invalidations if a shared Redis cache is configured.
+     */
+    @PostConstruct
+    public void start() {
+        if (redisConnectionFactory == null) {
+            return;
+        }
+        listenerContainer = new ReactiveRedisMessageListenerContainer(redisConnectionFactory);
+        invalidations = listenerContainer.receive(ChannelTopic.of(invalidationChannel))
+                .map(ReactiveSubscription.Message::getMessage)
+                .doOnError(e -> log.warn("Lost the redirect cache invalidation subscription, reconnecting", e))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe(this::invalidate);
+    }
+
+    /**
+     * Stops receiving invalidations.
+     */
+    @PreDestroy
+    public void stop() {
+        if (invalidations != null) {
+            invalidations.dispose();
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * Resolves a short URL token.
+     *
+     * @param shortUrl the short URL token
+     * @return the resolved target, or empty if the short URL does not exist
+     */
+    public Mono<ResolvedUrlDTO> resolve(String shortUrl) {
+        return Mono.fromFuture(() -> cache.get(shortUrl, (token, executor) -> find(token).toFuture()));
+    }
+
+    /**
+     * Drops a short URL token from the cache.
+     *
+     * @param shortUrl the short URL token
+     */
+    public void invalidate(String shortUrl) {
+        cache.synchronous().invalidate(shortUrl);
+    }
+
+    private Mono<ResolvedUrlDTO> find(String shortUrl) {
+        return databaseClient.sql(FIND_RESOLVED)
+                .bind(0, shortUrl)
+                .map((row, metadata) -> new ResolvedUrlDTO(row.get("id", Long.class), row.get("original_url", String.class)))
+                .one();
+    }
+}
@@ -0,0 +1,140 @@
+package com.andreibel.shortlink.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Exercises {@link ClickCounterService} against a mocked database that records the applied increments.
+ */
+class ClickCounterServiceTests {
+
+    private final Map<Long, Long> database = new ConcurrentHashMap<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private PlatformTransactionManager transactionManager;
+    private ClickCounterService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createService() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new DataAccessResourceFailureException("down");
+            }
+            List<Object[]> args = invocation.getArgument(1);
+            for (Object[] row : args) {
+                database.merge((Long) row[1], (Long) row[0], Long::sum);
+            }
+            return new int[args.size()];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        transactionManager = mock(PlatformTransactionManager.class);
+        service = new ClickCounterService(jdbcTemplate, new TransactionTemplate(transactionManager));
+    }
+
+    @Test
+    void concurrentIncrementsAndFlushesCountEveryClickOnce() throws Exception {
+        int threads = 8;
+        int clicksPerThread = 50_000;
+        int mappings = 64;
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    // Frequent flushes keep retiring idle counters while clicks still target them.
+                    service.flush();
+                }
+                return null;
+            });
+            List<Future<?>> clickers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                clickers.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < clicksPerThread; i++) {
+                        service.increment((long) random.nextInt(mappings));
+                        if (random.nextInt(1000) == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> clicker : clickers) {
+                clicker.get(30, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            flusher.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        service.flush();
+
+        assertThat(database.values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo((long) threads * clicksPerThread);
+        for (long id = 0; id < mappings; id++) {
+            assertThat(service.getPendingCount(id)).isZero();
+        }
+    }
+
+    @Test
+    void failedFlushIsRolledBackAndRetriedWhole() {
+        service.increment(1L);
+        service.increment(1L);
+        service.increment(2L);
+        failuresLeft.set(1);
+
+        service.flush();
+
+        assertThat(database).isEmpty();
+        assertThat(service.getPendingCount(1L)).isEqualTo(2);
+        verify(transactionManager).rollback(any());
+
+        service.flush();
+
+        assertThat(database).containsExactlyInAnyOrderEntriesOf(Map.of(1L, 2L, 2L, 1L));
+        assertThat(service.getPendingCount(1L)).isZero();
+    }
+
+    @Test
+    void idleCountersAreRetiredAndRecreatedOnTheNextClick() {
+        service.increment(5L);
+        service.flush();
+        service.flush();
+
+        service.increment(5L);
+        service.flush();
+
+        assertThat(database).containsEntry(5L, 2L);
+        verify(transactionManager, never()).rollback(any());
+    }
+}
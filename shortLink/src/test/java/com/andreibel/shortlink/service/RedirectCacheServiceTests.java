@@ -0,0 +1,141 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import com.andreibel.shortlink.service.cache.InMemorySharedRedirectCache;
+import com.andreibel.shortlink.service.cache.SharedRedirectCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exercises {@link RedirectCacheService} against {@link InMemorySharedRedirectCache}, with one
+ * service per simulated instance sharing the JVM-wide tier.
+ */
+class RedirectCacheServiceTests {
+
+    private final List<InMemorySharedRedirectCache> tiers = new ArrayList<>();
+
+    @AfterEach
+    void unsubscribe() {
+        tiers.forEach(InMemorySharedRedirectCache::stop);
+    }
+
+    @Test
+    void tryLockAdmitsOneHolderUntilUnlocked() {
+        InMemorySharedRedirectCache tier = tier();
+        String code = uniqueCode();
+
+        String token = tier.tryLock(code, Duration.ofSeconds(5));
+        assertThat(token).isNotNull();
+        assertThat(tier.tryLock(code, Duration.ofSeconds(5))).isNull();
+
+        tier.unlock(code, "someone-else");
+        assertThat(tier.tryLock(code, Duration.ofSeconds(5))).isNull();
+
+        tier.unlock(code, token);
+        assertThat(tier.tryLock(code, Duration.ofSeconds(5))).isNotNull();
+    }
+
+    @Test
+    void coldCodeIsLoadedOnceAcrossInstances() throws Exception {
+        int instances = 8;
+        List<RedirectCacheService> services = new ArrayList<>();
+        for (int i = 0; i < instances; i++) {
+            services.add(service(tier()));
+        }
+        String code = uniqueCode();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Function<String, ResolvedUrlDTO> slowLoader = key -> {
+            loads.incrementAndGet();
+            sleep(100);
+            return new ResolvedUrlDTO(42L, "https://example.com");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(instances);
+        try {
+            List<Future<ResolvedUrlDTO>> results = new ArrayList<>();
+            for (RedirectCacheService service : services) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.get(code, slowLoader);
+                }));
+            }
+            start.countDown();
+            for (Future<ResolvedUrlDTO> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getId()).isEqualTo(42L);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void creatingACodeDropsItsNegativeEntryOnEveryInstance() {
+        RedirectCacheService creator = service(tier());
+        RedirectCacheService other = service(tier());
+        String code = uniqueCode();
+        AtomicInteger loads = new AtomicInteger();
+        ResolvedUrlDTO[] stored = {null};
+        Function<String, ResolvedUrlDTO> loader = key -> {
+            loads.incrementAndGet();
+            return stored[0];
+        };
+
+        assertThat(other.get(code, loader)).isNull();
+        assertThat(other.get(code, loader)).isNull();
+        assertThat(loads).as("the miss is remembered in the shared tier").hasValue(1);
+
+        stored[0] = new ResolvedUrlDTO(7L, "https://example.org");
+        List<String> announced = new ArrayList<>();
+        other.addCreationListener(announced::add);
+        creator.announceCreated(code);
+
+        assertThat(announced).containsExactly(code);
+        assertThat(other.get(code, loader).getId()).isEqualTo(7L);
+        assertThat(loads).hasValue(2);
+    }
+
+    private InMemorySharedRedirectCache tier() {
+        InMemorySharedRedirectCache tier = new InMemorySharedRedirectCache();
+        tiers.add(tier);
+        return tier;
+    }
+
+    private static RedirectCacheService service(SharedRedirectCache tier) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("sharedRedirectCache", tier);
+        return new RedirectCacheService(1000, Duration.ofMinutes(10),
+                beans.getBeanProvider(SharedRedirectCache.class),
+                Duration.ofHours(1), Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(2),
+                new SimpleMeterRegistry());
+    }
+
+    private static String uniqueCode() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.andreibel.shortlink.service;
+
+import com.andreibel.shortlink.dtos.UrlMappingDTO;
+import com.andreibel.shortlink.moduels.UrlMapping;
+import com.andreibel.shortlink.moduels.User;
+import com.andreibel.shortlink.repository.UrlMappingRepository;
+import com.andreibel.shortlink.service.index.ShortCodeFilterService;
+import com.andreibel.shortlink.service.index.ShortCodeIndexService;
+import com.andreibel.shortlink.service.shortcode.ShortCodeGenerator;
+import com.andreibel.shortlink.service.toplinks.TopLinksService;
+import com.andreibel.shortlink.service.visitor.VisitorSketchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exercises the short code collision handling of {@link UrlMappingService#createShortUrl(String, User)}.
+ */
+class UrlMappingServiceTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UrlMappingRepository urlMappingRepository;
+    private ShortCodeGenerator shortCodeGenerator;
+    private UrlMappingService service;
+    private User user;
+
+    @BeforeEach
+    void createService() {
+        urlMappingRepository = mock(UrlMappingRepository.class);
+        shortCodeGenerator = mock(ShortCodeGenerator.class);
+        when(shortCodeGenerator.nextCode()).thenReturn("taken", "free", "spare");
+        service = new UrlMappingService(urlMappingRepository,
+                mock(ClickAnalyticsService.class),
+                mock(RedirectCacheService.class),
+                mock(ClickIngestionService.class),
+                mock(ClickCounterService.class),
+                shortCodeGenerator,
+                mock(ShortCodeIndexService.class),
+                mock(ShortCodeFilterService.class),
+                new ShortLinkMetricsService(meterRegistry),
+                mock(VisitorSketchService.class),
+                mock(TopLinksService.class));
+        user = new User();
+        user.setUsername("alice");
+    }
+
+    @Test
+    void drawsANewCodeWhenTheShortUrlIsTaken() {
+        when(urlMappingRepository.save(any(UrlMapping.class)))
+                .thenThrow(violation("PUBLIC.UK_URL_MAPPING_SHORT_URL_INDEX_1"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        UrlMappingDTO created = service.createShortUrl("https://example.com", user);
+
+        assertThat(created.getShortUrl()).isEqualTo("free");
+        assertThat(collisions()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesTheConstraintNameAsReportedByMySql() {
+        when(urlMappingRepository.save(any(UrlMapping.class)))
+                .thenThrow(violation("url_mapping.uk_url_mapping_short_url"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThat(service.createShortUrl("https://example.com", user).getShortUrl()).isEqualTo("free");
+    }
+
+    @Test
+    void rethrowsViolationsOfOtherConstraints() {
+        DataIntegrityViolationException violation = violation("fk_url_mapping_user");
+        when(urlMappingRepository.save(any(UrlMapping.class))).thenThrow(violation);
+
+        assertThatThrownBy(() -> service.createShortUrl("https://example.com", user)).isSameAs(violation);
+
+        verify(shortCodeGenerator, times(1)).nextCode();
+        assertThat(collisions()).isZero();
+    }
+
+    @Test
+    void rethrowsViolationsWithoutAConstraintName() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("value too long");
+        when(urlMappingRepository.save(any(UrlMapping.class))).thenThrow(violation);
+
+        assertThatThrownBy(() -> service.createShortUrl("https://example.com", user)).isSameAs(violation);
+
+        verify(urlMappingRepository, times(1)).save(any(UrlMapping.class));
+    }
+
+    @Test
+    void givesUpAfterThreeCollisions() {
+        when(urlMappingRepository.save(any(UrlMapping.class))).thenThrow(violation("uk_url_mapping_short_url"));
+
+        assertThatThrownBy(() -> service.createShortUrl("https://example.com", user))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        verify(urlMappingRepository, times(3)).save(any(UrlMapping.class));
+        assertThat(collisions()).isEqualTo(3);
+    }
+
+    private double collisions() {
+        return meterRegistry.get("shortlink.codes.collisions").counter().count();
+    }
+
+    private static DataIntegrityViolationException violation(String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key"), constraintName));
+    }
+}
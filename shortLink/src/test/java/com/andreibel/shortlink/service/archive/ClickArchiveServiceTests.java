@@ -0,0 +1,64 @@
+package com.andreibel.shortlink.service.archive;
+
+import com.andreibel.shortlink.dtos.ClickEventDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ClickArchiveServiceTests {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+    @TempDir
+    Path directory;
+
+    private ClickArchiveService service;
+
+    @AfterEach
+    void close() {
+        service.stop();
+    }
+
+    @Test
+    void rescanPicksUpSegmentsWrittenElsewhereAndDropsRemovedOnes() throws IOException {
+        service = new ClickArchiveService(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class),
+                true, directory, 100);
+        service.start();
+        assertThat(service.getWatermark()).isNull();
+
+        Path first = writeSegment("clicks-20250101-20250102.seg", DAY, 42);
+        Path second = writeSegment("clicks-20250102-20250103.seg", DAY.plusDays(1), 42);
+        service.rescan();
+
+        assertThat(service.getWatermark()).isEqualTo(DAY.plusDays(2));
+        List<ClickEventDTO> clicks = service.countDailyClicks(List.of(42L), DAY, DAY.plusDays(1));
+        assertThat(clicks).extracting(ClickEventDTO::getClickDate).containsExactly(DAY, DAY.plusDays(1));
+
+        Files.delete(second);
+        service.rescan();
+
+        assertThat(service.getWatermark()).isEqualTo(DAY.plusDays(1));
+        assertThat(service.countDailyClicks(List.of(42L), DAY, DAY.plusDays(1))).hasSize(1);
+        assertThat(first).exists();
+    }
+
+    private Path writeSegment(String name, LocalDate day, long urlMappingId) throws IOException {
+        Path file = directory.resolve(name);
+        try (ClickSegment.Writer writer = new ClickSegment.Writer(file, day, day.plusDays(1))) {
+            writer.add(urlMappingId, day.atTime(9, 30));
+            writer.finish();
+        }
+        return file;
+    }
+}
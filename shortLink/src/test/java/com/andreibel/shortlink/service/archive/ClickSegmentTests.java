@@ -0,0 +1,108 @@
+package com.andreibel.shortlink.service.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClickSegmentTests {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 1, 4);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackWhatWasWritten() throws IOException {
+        Path file = directory.resolve("clicks.seg");
+        try (ClickSegment.Writer writer = new ClickSegment.Writer(file, FROM, TO)) {
+            writer.add(3, FROM.atTime(10, 0));
+            writer.add(3, FROM.atTime(10, 0));
+            writer.add(3, FROM.plusDays(2).atTime(23, 59, 59));
+            writer.add(7, FROM.plusDays(1).atStartOfDay());
+            writer.add(1000, FROM.plusDays(1).atTime(12, 0));
+            writer.finish();
+        }
+
+        try (ClickSegment segment = ClickSegment.open(file)) {
+            assertThat(segment.getFrom()).isEqualTo(FROM);
+            assertThat(segment.getTo()).isEqualTo(TO);
+            assertThat(segment.getEventCount()).isEqualTo(5);
+            assertThat(segment.getMappingCount()).isEqualTo(3);
+
+            assertThat(count(segment, new long[]{3}, FROM, TO)).containsExactly(
+                    Map.entry(FROM, 2L), Map.entry(FROM.plusDays(2), 1L));
+            assertThat(count(segment, new long[]{3, 7, 1000}, FROM.plusDays(1), FROM.plusDays(1)))
+                    .containsExactly(Map.entry(FROM.plusDays(1), 2L));
+            assertThat(count(segment, new long[]{4, 999}, FROM, TO)).isEmpty();
+            assertThat(count(segment, new long[]{3}, TO, TO.plusDays(5))).isEmpty();
+        }
+    }
+
+    @Test
+    void hotMappingIsSplitAcrossBlocks() throws IOException {
+        Path file = directory.resolve("hot.seg");
+        int perDay = 60_000;
+        try (ClickSegment.Writer writer = new ClickSegment.Writer(file, FROM, TO)) {
+            writer.add(1, FROM.atStartOfDay());
+            for (int day = 0; day < 3; day++) {
+                LocalDateTime start = FROM.plusDays(day).atStartOfDay();
+                for (int i = 0; i < perDay; i++) {
+                    writer.add(2, start.plusSeconds(i));
+                }
+            }
+            writer.add(3, FROM.plusDays(2).atStartOfDay());
+            writer.finish();
+        }
+
+        try (ClickSegment segment = ClickSegment.open(file)) {
+            assertThat(segment.getBlockCount()).isGreaterThan(1);
+            assertThat(segment.getMappingCount()).isEqualTo(3);
+            assertThat(segment.getEventCount()).isEqualTo(3L * perDay + 2);
+
+            assertThat(count(segment, new long[]{2}, FROM, TO)).containsExactly(
+                    Map.entry(FROM, (long) perDay),
+                    Map.entry(FROM.plusDays(1), (long) perDay),
+                    Map.entry(FROM.plusDays(2), (long) perDay));
+            assertThat(count(segment, new long[]{2}, FROM.plusDays(1), FROM.plusDays(1)))
+                    .containsExactly(Map.entry(FROM.plusDays(1), (long) perDay));
+            assertThat(count(segment, new long[]{1, 3}, FROM, TO)).containsExactly(
+                    Map.entry(FROM, 1L), Map.entry(FROM.plusDays(2), 1L));
+        }
+    }
+
+    @Test
+    void rejectsUnsortedOrOutOfRangeEvents() throws IOException {
+        try (ClickSegment.Writer writer = new ClickSegment.Writer(directory.resolve("bad.seg"), FROM, TO)) {
+            writer.add(5, FROM.atTime(12, 0));
+            assertThatThrownBy(() -> writer.add(4, FROM.atTime(13, 0))).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.add(5, FROM.atTime(11, 0))).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.add(6, TO.atStartOfDay())).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> writer.add(6, FROM.minusDays(1).atStartOfDay())).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSegments() throws IOException {
+        Path file = Files.write(directory.resolve("junk.seg"), new byte[64]);
+
+        assertThatThrownBy(() -> ClickSegment.open(file)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<LocalDate, Long> count(ClickSegment segment, long[] ids, LocalDate start, LocalDate end)
+            throws IOException {
+        Map<LocalDate, Long> counts = new TreeMap<>();
+        segment.countDailyClicks(ids, start, end, counts);
+        return counts;
+    }
+}
@@ -0,0 +1,55 @@
+package com.andreibel.shortlink.service.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShortCodeBloomFilterTests {
+
+    @Test
+    void addedCodesAreAlwaysFound() {
+        ShortCodeBloomFilter filter = ShortCodeBloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("code" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("code" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        ShortCodeBloomFilter filter = ShortCodeBloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("code" + i);
+        }
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+        assertThat(filter.expectedFpp()).isBetween(0.005, 0.02);
+    }
+
+    @Test
+    void putReportsWhetherTheCodeWasNew() {
+        ShortCodeBloomFilter filter = ShortCodeBloomFilter.create(1000, 0.01);
+
+        assertThat(filter.put("abc")).isTrue();
+        assertThat(filter.put("abc")).isFalse();
+        assertThat(filter.getInsertions()).isEqualTo(1);
+        assertThat(filter.getExpectedInsertions()).isEqualTo(1000);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        ShortCodeBloomFilter filter = ShortCodeBloomFilter.create(1000, 0.01);
+
+        assertThat(filter.mightContain("abc")).isFalse();
+        assertThat(filter.expectedFpp()).isZero();
+        assertThat(filter.getByteSize()).isPositive();
+    }
+}
@@ -0,0 +1,124 @@
+package com.andreibel.shortlink.service.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShortCodeFilterServiceTests {
+
+    private static final LocalDateTime NEWEST = LocalDateTime.of(2025, 3, 1, 12, 0);
+    private static final Duration OVERLAP = Duration.ofSeconds(15);
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<Timestamp> pollParameters = new ArrayList<>();
+    private final List<Object[]> pollRows = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void mockDatabase() throws SQLException {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class)))
+                .thenReturn(new Object[]{2L, Timestamp.valueOf(NEWEST)});
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(row("existing1", null));
+            handler.processRow(row("existing2", null));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            pollParameters.add((Timestamp) invocation.getArguments()[2]);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] values : pollRows) {
+                handler.processRow(row((String) values[0], (LocalDateTime) values[1]));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void pollReadsByCreationTimeWithOverlap() {
+        ShortCodeFilterService service = service(Duration.ofHours(1));
+        service.rebuild();
+        assertThat(service.getPollFrom()).isEqualTo(NEWEST.minus(OVERLAP));
+
+        // Created before the newest code seen but committed late, e.g. from another node's older id block.
+        pollRows.add(new Object[]{"late", NEWEST.minusSeconds(5)});
+        pollRows.add(new Object[]{"fresh", NEWEST.plusSeconds(2)});
+        service.poll();
+
+        assertThat(pollParameters).containsExactly(Timestamp.valueOf(NEWEST.minus(OVERLAP)));
+        assertThat(service.mightExist("late")).isTrue();
+        assertThat(service.mightExist("fresh")).isTrue();
+        assertThat(service.getPollFrom()).isEqualTo(NEWEST.plusSeconds(2).minus(OVERLAP));
+
+        pollRows.clear();
+        service.poll();
+        assertThat(pollParameters).last().isEqualTo(Timestamp.valueOf(NEWEST.plusSeconds(2).minus(OVERLAP)));
+    }
+
+    @Test
+    void unknownCodesAreRejectedWhileTheFilterIsCurrent() {
+        ShortCodeFilterService service = service(Duration.ofHours(1));
+        service.rebuild();
+
+        assertThat(service.mightExist("existing1")).isTrue();
+        assertThat(service.mightExist("unknown")).isFalse();
+    }
+
+    @Test
+    void unknownCodesFallThroughOnceTheFilterIsStale() throws InterruptedException {
+        ShortCodeFilterService service = service(Duration.ofMillis(50));
+        service.rebuild();
+        assertThat(service.mightExist("unknown")).isFalse();
+
+        doThrow(new DataAccessResourceFailureException("down"))
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        Thread.sleep(100);
+        service.poll();
+
+        assertThat(service.mightExist("unknown")).isTrue();
+    }
+
+    @Test
+    void codesAreLetThroughBeforeTheFirstBuild() {
+        ShortCodeFilterService service = service(Duration.ofHours(1));
+
+        assertThat(service.mightExist("unknown")).isTrue();
+    }
+
+    private ShortCodeFilterService service(Duration maxStaleness) {
+        return new ShortCodeFilterService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), true, 0.01, OVERLAP, maxStaleness);
+    }
+
+    private static ResultSet row(String shortUrl, LocalDateTime createdDate) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(shortUrl);
+        if (createdDate != null) {
+            when(rs.getTimestamp(2)).thenReturn(Timestamp.valueOf(createdDate));
+        }
+        return rs;
+    }
+}
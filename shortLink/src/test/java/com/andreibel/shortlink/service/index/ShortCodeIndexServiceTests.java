@@ -0,0 +1,230 @@
+package com.andreibel.shortlink.service.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exercises {@link ShortCodeIndexService} against a mocked {@code url_mapping} table and a real index file.
+ */
+class ShortCodeIndexServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    /**
+     * Rows returned by a full build: id, short URL, original URL.
+     */
+    private final List<Object[]> tableRows = new ArrayList<>();
+    /**
+     * Rows returned by the next poll.
+     */
+    private final List<Object[]> pollRows = new ArrayList<>();
+    private final List<Long> pollParameters = new ArrayList<>();
+    private final List<ShortCodeIndexService> services = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void mockDatabase() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenAnswer(invocation -> new long[]{
+                tableRows.size(), tableRows.stream().mapToLong(row -> (Long) row[0]).max().orElse(0)});
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] values : tableRows) {
+                handler.processRow(row(values));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            long from = (Long) invocation.getArguments()[2];
+            pollParameters.add(from);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] values : pollRows) {
+                if ((Long) values[0] > from) {
+                    handler.processRow(row(values));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @AfterEach
+    void unmap() {
+        services.forEach(ShortCodeIndexService::stop);
+    }
+
+    @Test
+    void rebuildServesEveryMappingFromTheFile() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        tableRows.add(new Object[]{2L, "def", "https://b.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        assertThat(service.find("abc")).isNull();
+
+        service.rebuild();
+
+        assertThat(Files.isRegularFile(dir.resolve("index.bin"))).isTrue();
+        assertThat(Files.exists(dir.resolve("index.bin.tmp"))).isFalse();
+        assertThat(service.find("abc").getId()).isEqualTo(1);
+        assertThat(service.find("def").getOriginalUrl()).isEqualTo("https://b.example.com");
+        assertThat(service.find("unknown")).isNull();
+    }
+
+    @Test
+    void pollAddsNewMappingsToTheOverlay() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        service.rebuild();
+
+        pollRows.add(new Object[]{2L, "new", "https://new.example.com"});
+        service.poll();
+
+        assertThat(pollParameters).containsExactly(1L);
+        assertThat(service.find("new").getId()).isEqualTo(2);
+        assertThat(service.find("abc").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void pollRereadsTheReorderWindowBelowTheHighestIdSeen() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 5);
+        service.rebuild();
+
+        pollRows.add(new Object[]{20L, "fast", "https://fast.example.com"});
+        service.poll();
+        // Id 18 came from another node's older id block and committed after id 20 was polled.
+        pollRows.add(new Object[]{18L, "late", "https://late.example.com"});
+        service.poll();
+
+        assertThat(pollParameters).containsExactly(1L, 15L);
+        assertThat(service.find("late").getId()).isEqualTo(18);
+        assertThat(service.find("fast").getId()).isEqualTo(20);
+    }
+
+    @Test
+    void evictedCodesAreHiddenFromTheIndexAndTheOverlay() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        service.rebuild();
+        pollRows.add(new Object[]{2L, "new", "https://new.example.com"});
+        service.poll();
+
+        service.evict("abc");
+        service.evict("new");
+        service.poll();
+
+        assertThat(service.find("abc")).isNull();
+        assertThat(service.find("new")).isNull();
+    }
+
+    @Test
+    void rebuildReplacesOverlayEntriesItCovers() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        service.rebuild();
+        pollRows.add(new Object[]{2L, "new", "https://old-target.example.com"});
+        service.poll();
+        assertThat(service.find("new").getOriginalUrl()).isEqualTo("https://old-target.example.com");
+
+        tableRows.add(new Object[]{2L, "new", "https://new-target.example.com"});
+        service.rebuild();
+
+        // Served from the rebuilt file now, not from the overlay.
+        assertThat(service.find("new").getOriginalUrl()).isEqualTo("https://new-target.example.com");
+    }
+
+    @Test
+    void rebuildForgetsDeletionsItHasSeen() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        service.rebuild();
+        service.evict("abc");
+        tableRows.clear();
+
+        service.rebuild();
+        assertThat(service.find("abc")).isNull();
+
+        // The code is free again once the rebuilt index no longer has it.
+        tableRows.add(new Object[]{3L, "abc", "https://reused.example.com"});
+        service.rebuild();
+        assertThat(service.find("abc").getId()).isEqualTo(3);
+    }
+
+    @Test
+    void failedPollKeepsServingTheIndex() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(true, 1000);
+        service.rebuild();
+        doThrow(new DataAccessResourceFailureException("down"))
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        service.poll();
+
+        assertThat(service.find("abc").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void startMapsAFreshIndexFileWithoutRebuilding() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        service(true, 1000).rebuild();
+        tableRows.clear();
+
+        ShortCodeIndexService restarted = service(true, 1000);
+        restarted.start();
+
+        assertThat(restarted.find("abc").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledServiceNeverBuildsOrAnswers() {
+        tableRows.add(new Object[]{1L, "abc", "https://a.example.com"});
+        ShortCodeIndexService service = service(false, 1000);
+
+        service.start();
+        service.rebuild();
+        service.poll();
+
+        assertThat(Files.exists(dir.resolve("index.bin"))).isFalse();
+        assertThat(service.find("abc")).isNull();
+    }
+
+    private ShortCodeIndexService service(boolean enabled, long reorderWindow) {
+        ShortCodeIndexService service = new ShortCodeIndexService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), enabled, dir.resolve("index.bin"), reorderWindow, Duration.ofHours(1));
+        services.add(service);
+        return service;
+    }
+
+    private static ResultSet row(Object[] values) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn((Long) values[0]);
+        when(rs.getString(2)).thenReturn((String) values[1]);
+        when(rs.getString(3)).thenReturn((String) values[2]);
+        return rs;
+    }
+}
@@ -0,0 +1,231 @@
+package com.andreibel.shortlink.service.index;
+
+import com.andreibel.shortlink.dtos.ResolvedUrlDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShortCodeIndexTests {
+
+    /**
+     * Slot count of an index built for at most 512 entries.
+     */
+    private static final int MIN_SLOTS = 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void encodePacksSixBitsPerCharacter() {
+        assertThat(ShortCodeIndex.encode("0")).isEqualTo(1);
+        assertThat(ShortCodeIndex.encode("9")).isEqualTo(10);
+        assertThat(ShortCodeIndex.encode("A")).isEqualTo(11);
+        assertThat(ShortCodeIndex.encode("Z")).isEqualTo(36);
+        assertThat(ShortCodeIndex.encode("a")).isEqualTo(37);
+        assertThat(ShortCodeIndex.encode("z")).isEqualTo(62);
+        assertThat(ShortCodeIndex.encode("aB")).isEqualTo(37L << 6 | 12);
+        // Leading zero digits are not lost, so codes of different lengths never share a key.
+        assertThat(ShortCodeIndex.encode("00")).isNotEqualTo(ShortCodeIndex.encode("0"));
+    }
+
+    @Test
+    void encodeRejectsCodesItCannotPack() {
+        assertThat(ShortCodeIndex.encode("")).isZero();
+        assertThat(ShortCodeIndex.encode("zzzzzzzzzz")).isPositive();
+        assertThat(ShortCodeIndex.encode("zzzzzzzzzzz")).isZero();
+        assertThat(ShortCodeIndex.encode("ab-c")).isZero();
+        assertThat(ShortCodeIndex.encode("abç")).isZero();
+    }
+
+    @Test
+    void everyAddedCodeResolvesAfterReopening() throws IOException {
+        Path file = dir.resolve("index.bin");
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            urls.put("c" + Integer.toString(i, 36), "https://example.com/" + i);
+        }
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, urls.size())) {
+            long id = 1;
+            for (Map.Entry<String, String> entry : urls.entrySet()) {
+                assertThat(builder.add(id++, entry.getKey(), entry.getValue())).isTrue();
+            }
+            assertThat(builder.add(99, "c0", "https://duplicate.example.com")).isFalse();
+            builder.finish(urls.size());
+        }
+
+        try (ShortCodeIndex index = ShortCodeIndex.open(file)) {
+            assertThat(index.getEntryCount()).isEqualTo(urls.size());
+            assertThat(index.getMaxId()).isEqualTo(urls.size());
+            assertThat(index.getBuiltAt()).isPositive();
+            assertThat(index.getByteSize()).isEqualTo(Files.size(file));
+            long id = 1;
+            for (Map.Entry<String, String> entry : urls.entrySet()) {
+                assertThat(index.findId(entry.getKey())).isEqualTo(id);
+                ResolvedUrlDTO resolved = index.resolve(entry.getKey());
+                assertThat(resolved.getId()).isEqualTo(id);
+                assertThat(resolved.getOriginalUrl()).isEqualTo(entry.getValue());
+                id++;
+            }
+            assertThat(index.findId("unknown")).isEqualTo(-1);
+            assertThat(index.resolve("unknown")).isNull();
+            assertThat(index.findId("c0c0c0c0c0c")).isEqualTo(-1);
+            assertThat(index.resolve("c0c0c0c0c0c")).isNull();
+            assertThat(index.resolve("")).isNull();
+        }
+    }
+
+    @Test
+    void collidingCodesProbePastEachOtherAndWrapAround() throws IOException {
+        // Codes whose home is the last slot: the second and third wrap to slots 0 and 1.
+        List<String> lastSlot = codesWithHomeSlot(MIN_SLOTS - 1, 4);
+        // A code whose home is slot 0 must probe past the wrapped ones.
+        String firstSlot = codesWithHomeSlot(0, 1).get(0);
+        Path file = dir.resolve("index.bin");
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, 10)) {
+            for (int i = 0; i < 3; i++) {
+                builder.add(i + 1, lastSlot.get(i), "https://example.com/" + i);
+            }
+            builder.add(4, firstSlot, "https://example.com/first");
+            builder.finish(4);
+        }
+
+        try (ShortCodeIndex index = ShortCodeIndex.open(file)) {
+            assertThat(index.getByteSize()).isGreaterThanOrEqualTo(64 + MIN_SLOTS * 24L);
+            for (int i = 0; i < 3; i++) {
+                assertThat(index.resolve(lastSlot.get(i)).getOriginalUrl()).isEqualTo("https://example.com/" + i);
+            }
+            assertThat(index.resolve(firstSlot).getOriginalUrl()).isEqualTo("https://example.com/first");
+            // Walks the whole wrapped cluster before reaching an empty slot.
+            assertThat(index.findId(lastSlot.get(3))).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void builderIsSizedForTheExpectedEntriesAndRejectsMore() throws IOException {
+        Path file = dir.resolve("index.bin");
+        // 1,000 expected entries get 2,048 slots, half of which may be used.
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, 1_000)) {
+            for (int i = 0; i < 1_024; i++) {
+                assertThat(builder.add(i, "c" + Integer.toString(i, 36), "u")).isTrue();
+            }
+            assertThat(builder.getEntryCount()).isEqualTo(1_024);
+
+            assertThatThrownBy(() -> builder.add(1_024, "full", "u"))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("full");
+            builder.finish(1_023);
+        }
+
+        try (ShortCodeIndex index = ShortCodeIndex.open(file)) {
+            assertThat(index.getEntryCount()).isEqualTo(1_024);
+            assertThat(index.getByteSize()).isGreaterThanOrEqualTo(64 + 2_048 * 24L);
+        }
+    }
+
+    @Test
+    void urlsUpTo65535BytesAreStored() throws IOException {
+        Path file = dir.resolve("index.bin");
+        String longest = "h".repeat(0xFFFF);
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, 10)) {
+            assertThat(builder.add(1, "longest", longest)).isTrue();
+            assertThat(builder.add(2, "toolong", longest + "h")).isFalse();
+            // Multi-byte characters count by their UTF-8 length.
+            assertThat(builder.add(3, "wide", "é".repeat(0x8000))).isFalse();
+            assertThat(builder.add(4, "bad-code", "https://example.com")).isFalse();
+            builder.finish(4);
+        }
+
+        try (ShortCodeIndex index = ShortCodeIndex.open(file)) {
+            assertThat(index.getEntryCount()).isEqualTo(1);
+            assertThat(index.resolve("longest").getOriginalUrl()).isEqualTo(longest);
+            assertThat(index.resolve("toolong")).isNull();
+            assertThat(index.resolve("wide")).isNull();
+        }
+    }
+
+    @Test
+    void openRejectsFilesThatAreNotAnIndex() throws IOException {
+        Path empty = Files.createFile(dir.resolve("empty.bin"));
+        Path shortFile = Files.write(dir.resolve("short.bin"), new byte[32]);
+        Path garbage = Files.write(dir.resolve("garbage.bin"), new byte[4096]);
+        Path wrongVersion = dir.resolve("version.bin");
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(wrongVersion, 10)) {
+            builder.add(1, "abc", "https://example.com");
+            builder.finish(1);
+        }
+        try (FileChannel channel = FileChannel.open(wrongVersion, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{2}), 8);
+        }
+
+        for (Path file : List.of(empty, shortFile, garbage, wrongVersion)) {
+            assertThatThrownBy(() -> ShortCodeIndex.open(file))
+                    .as(file.getFileName().toString())
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void lookupsFailCleanlyOnceTheIndexIsClosed() throws Exception {
+        Path file = dir.resolve("index.bin");
+        try (ShortCodeIndex.Builder builder = new ShortCodeIndex.Builder(file, 10)) {
+            builder.add(1, "abc", "https://example.com");
+            builder.finish(1);
+        }
+        ShortCodeIndex index = ShortCodeIndex.open(file);
+        AtomicLong lookups = new AtomicLong();
+        CountDownLatch looking = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Throwable> reader = executor.submit(() -> {
+                try {
+                    while (true) {
+                        assertThat(index.resolve("abc").getId()).isEqualTo(1);
+                        if (lookups.incrementAndGet() == 1_000) {
+                            looking.countDown();
+                        }
+                    }
+                } catch (IllegalStateException e) {
+                    return e;
+                }
+            });
+            assertThat(looking.await(10, TimeUnit.SECONDS)).isTrue();
+
+            index.close();
+
+            assertThat(reader.get(10, TimeUnit.SECONDS)).isInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThatThrownBy(() -> index.findId("abc")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<String> codesWithHomeSlot(long slot, int count) {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; codes.size() < count; i++) {
+            String code = "k" + Integer.toString(i, 36);
+            if ((ShortCodeIndex.mix(ShortCodeIndex.encode(code)) & (MIN_SLOTS - 1)) == slot) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+}
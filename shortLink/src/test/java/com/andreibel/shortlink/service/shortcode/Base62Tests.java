@@ -0,0 +1,54 @@
+package com.andreibel.shortlink.service.shortcode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Base62Tests {
+
+    @Test
+    void encodesDigitsOfTheAlphabet() {
+        assertThat(Base62.encode(0, 1)).isEqualTo("A");
+        assertThat(Base62.encode(25, 1)).isEqualTo("Z");
+        assertThat(Base62.encode(26, 1)).isEqualTo("a");
+        assertThat(Base62.encode(61, 1)).isEqualTo("9");
+        assertThat(Base62.encode(62, 1)).isEqualTo("BA");
+    }
+
+    @Test
+    void padsToTheMinimumLength() {
+        assertThat(Base62.encode(1, 8)).isEqualTo("AAAAAAAB");
+        assertThat(Base62.encode(0, 0)).isEqualTo("A");
+        assertThat(Base62.encode(62, 14)).hasSize(14).endsWith("BA");
+    }
+
+    @Test
+    void neverTruncatesLongerValues() {
+        assertThat(Base62.encode(Long.MAX_VALUE, 1)).hasSize(11);
+        assertThat(decode(Base62.encode(Long.MAX_VALUE, 1))).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void decodesBackToTheEncodedValue() {
+        for (int i = 0; i < 10_000; i++) {
+            long value = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+            assertThat(decode(Base62.encode(value, 8))).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThatThrownBy(() -> Base62.encode(-1, 8)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static long decode(String code) {
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            value = value * Base62.ALPHABET.length() + Base62.ALPHABET.indexOf(code.charAt(i));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,118 @@
+package com.andreibel.shortlink.service.shortcode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exercises {@link BlockSequenceShortCodeGenerator} against a mocked {@code short_code_sequence} row.
+ */
+class BlockSequenceShortCodeGeneratorTests {
+
+    private static final int BLOCK_SIZE = 10;
+
+    private final AtomicLong nextValue = new AtomicLong();
+    private final AtomicInteger reservations = new AtomicInteger();
+    private JdbcTemplate jdbcTemplate;
+    private BlockSequenceShortCodeGenerator generator;
+
+    @BeforeEach
+    void createGenerator() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.update(startsWith("update"), anyInt(), anyString())).thenAnswer(invocation -> {
+            reservations.incrementAndGet();
+            nextValue.addAndGet(invocation.<Integer>getArgument(1));
+            return 1;
+        });
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any())).thenAnswer(invocation -> nextValue.get());
+        generator = new BlockSequenceShortCodeGenerator(jdbcTemplate, mock(PlatformTransactionManager.class), BLOCK_SIZE);
+    }
+
+    @Test
+    void reservesANewBlockOnlyWhenTheCurrentOneIsExhausted() {
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            codes.add(generator.nextCode());
+        }
+        assertThat(reservations).hasValue(1);
+
+        codes.add(generator.nextCode());
+
+        assertThat(reservations).hasValue(2);
+        assertThat(codes).hasSize(BLOCK_SIZE + 1).allSatisfy(code -> assertThat(code).hasSize(8));
+    }
+
+    @Test
+    void createsTheSequenceRowWhenItIsMissing() {
+        doReturn(0).when(jdbcTemplate).update(startsWith("update"), anyInt(), anyString());
+        doAnswer(invocation -> {
+            nextValue.set(invocation.<Long>getArgument(2));
+            return 1;
+        }).when(jdbcTemplate).update(startsWith("insert"), anyString(), anyLong());
+
+        generator.nextCode();
+
+        verify(jdbcTemplate).update(startsWith("insert"), eq("url_mapping.short_url"), eq((long) BLOCK_SIZE));
+    }
+
+    @Test
+    void concurrentCallersNeverGetTheSameCode() throws Exception {
+        int threads = 8;
+        int codesPerThread = 5_000;
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < codesPerThread; i++) {
+                        codes.add(generator.nextCode());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(codes).hasSize(threads * codesPerThread);
+        // Every reserved id is handed out, so no block is wasted by a race on refill.
+        assertThat(reservations).hasValue(threads * codesPerThread / BLOCK_SIZE);
+        verify(jdbcTemplate, never()).update(startsWith("insert"), any(), any());
+        verify(jdbcTemplate, times(reservations.get())).queryForObject(anyString(), eq(Long.class), any());
+    }
+}
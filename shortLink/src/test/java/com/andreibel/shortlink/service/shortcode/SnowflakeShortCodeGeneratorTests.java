@@ -0,0 +1,97 @@
+package com.andreibel.shortlink.service.shortcode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeShortCodeGeneratorTests {
+
+    /**
+     * 2025-06-01T00:00:00Z, some time after the generator's epoch.
+     */
+    private static final long NOW = 1_748_736_000_000L;
+    private static final int SEQUENCE_PER_SECOND = 1 << 16;
+
+    @Test
+    void packsSecondsNodeAndSequence() {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(7);
+
+        long first = Base62Tests.decode(generator.nextCode(NOW));
+        long second = Base62Tests.decode(generator.nextCode(NOW));
+
+        assertThat(seconds(first)).isEqualTo(NOW / 1000 - 1_735_689_600L);
+        assertThat(node(first)).isEqualTo(7);
+        assertThat(sequence(first)).isZero();
+        assertThat(seconds(second)).isEqualTo(seconds(first));
+        assertThat(sequence(second)).isEqualTo(1);
+    }
+
+    @Test
+    void sequenceOverflowBorrowsFromTheNextSecond() {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(1);
+        Set<String> codes = new HashSet<>();
+        long previous = -1;
+        long last = 0;
+        for (int i = 0; i <= SEQUENCE_PER_SECOND; i++) {
+            String code = generator.nextCode(NOW);
+            assertThat(codes.add(code)).isTrue();
+            last = Base62Tests.decode(code);
+            assertThat(last).isGreaterThan(previous);
+            previous = last;
+        }
+
+        assertThat(seconds(last)).isEqualTo(NOW / 1000 - 1_735_689_600L + 1);
+        assertThat(sequence(last)).isZero();
+        assertThat(node(last)).isEqualTo(1);
+    }
+
+    @Test
+    void clockGoingBackwardsNeverRepeatsACode() {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(0);
+        long before = Base62Tests.decode(generator.nextCode(NOW));
+
+        long after = Base62Tests.decode(generator.nextCode(NOW - 60_000));
+
+        assertThat(after).isGreaterThan(before);
+        assertThat(seconds(after)).isEqualTo(seconds(before));
+        assertThat(sequence(after)).isEqualTo(sequence(before) + 1);
+    }
+
+    @Test
+    void catchesUpWhenTheClockMovesOn() {
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(0);
+        generator.nextCode(NOW);
+
+        long later = Base62Tests.decode(generator.nextCode(NOW + 5_000));
+
+        assertThat(seconds(later)).isEqualTo(NOW / 1000 - 1_735_689_600L + 5);
+        assertThat(sequence(later)).isZero();
+    }
+
+    @Test
+    void codesHaveAtLeastEightCharacters() {
+        assertThat(new SnowflakeShortCodeGenerator(0).nextCode(1_735_689_600_000L)).hasSize(8);
+    }
+
+    @Test
+    void rejectsNodeIdsOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeShortCodeGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeShortCodeGenerator(256)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long seconds(long id) {
+        return id >>> 24;
+    }
+
+    private static long node(long id) {
+        return id >>> 16 & 0xFF;
+    }
+
+    private static long sequence(long id) {
+        return id & 0xFFFF;
+    }
+}
@@ -0,0 +1,181 @@
+package com.andreibel.shortlink.service.toplinks;
+
+import com.andreibel.shortlink.service.toplinks.SlidingHeavyHitters.Estimate;
+import com.andreibel.shortlink.service.toplinks.SlidingHeavyHitters.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Drives {@link SlidingHeavyHitters} with explicit timestamps, so every test is deterministic.
+ */
+class SlidingHeavyHittersTests {
+
+    private static final long SLOT = 1_000;
+    private static final int SLOTS = 5;
+    /**
+     * Start of a slot, so {@code T0 + n * SLOT} is the start of the n-th slot after it.
+     */
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void heavyHitterIsReportedUntilItsSlotLeavesTheWindow() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 256, 16, T0);
+        for (int i = 0; i < 100; i++) {
+            hitters.record(42, T0);
+        }
+        for (long id = 1; id <= 10; id++) {
+            hitters.record(id, T0 + 1);
+        }
+
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long now = T0 + slot * SLOT + SLOT / 2;
+            hitters.rotate(now);
+            Snapshot snapshot = hitters.top(now, 3);
+            assertThat(snapshot.getTop()).first().satisfies(top -> {
+                assertThat(top.getId()).isEqualTo(42);
+                assertThat(top.getCount()).isGreaterThanOrEqualTo(100);
+            });
+            assertThat(snapshot.getTotal()).isEqualTo(110);
+        }
+
+        long expired = T0 + SLOTS * SLOT;
+        hitters.rotate(expired);
+        Snapshot snapshot = hitters.top(expired, 3);
+        assertThat(snapshot.getTop()).isEmpty();
+        assertThat(snapshot.getTotal()).isZero();
+    }
+
+    @Test
+    void totalCountsEveryClickInTheWindowExactly() {
+        // A narrow sketch makes estimates collide; the total must not.
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 16, 16, T0);
+        int[] perSlot = {7, 0, 13, 1, 29, 4, 11};
+        for (int slot = 0; slot < perSlot.length; slot++) {
+            long now = T0 + slot * SLOT;
+            hitters.rotate(now);
+            for (int i = 0; i < perSlot[slot]; i++) {
+                hitters.record(i % 9, now + i);
+            }
+            long expected = 0;
+            for (int s = Math.max(0, slot - SLOTS + 1); s <= slot; s++) {
+                expected += perSlot[s];
+            }
+            assertThat(hitters.top(now + SLOT - 1, 10).getTotal()).as("slot %d", slot).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void estimatesNeverUndercount() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 32, 256, T0);
+        Random random = new Random(7);
+        Map<Long, Long> actual = new HashMap<>();
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long now = T0 + slot * SLOT;
+            hitters.rotate(now);
+            for (int i = 0; i < 2_000; i++) {
+                // Skewed: low ids are clicked far more often.
+                long id = (long) Math.floor(Math.pow(random.nextDouble(), 3) * 200);
+                hitters.record(id, now);
+                actual.merge(id, 1L, Long::sum);
+            }
+        }
+
+        Snapshot snapshot = hitters.top(T0 + (SLOTS - 1) * SLOT, 256);
+
+        assertThat(snapshot.getTotal()).isEqualTo(SLOTS * 2_000L);
+        assertThat(snapshot.getTop()).isNotEmpty().allSatisfy(estimate ->
+                assertThat(estimate.getCount()).isGreaterThanOrEqualTo(actual.get(estimate.getId())));
+        assertThat(snapshot.getTop()).extracting(Estimate::getCount).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    }
+
+    @Test
+    void rotateClearsTheNextSlotBeforeItIsReused() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 256, 16, T0);
+        for (int i = 0; i < 10; i++) {
+            hitters.record(42, T0);
+        }
+
+        // The ring has one slot more than the window, so T0's slot comes round again after SLOTS + 1 slots.
+        for (int slot = 1; slot <= SLOTS; slot++) {
+            hitters.rotate(T0 + slot * SLOT);
+        }
+        long reused = T0 + (SLOTS + 1) * SLOT;
+        hitters.record(42, reused);
+
+        Snapshot snapshot = hitters.top(reused, 1);
+        assertThat(snapshot.getTotal()).isEqualTo(1);
+        assertThat(snapshot.getTop()).singleElement().satisfies(top -> assertThat(top.getCount()).isEqualTo(1));
+    }
+
+    @Test
+    void rotateCatchesUpAfterAGap() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 256, 16, T0);
+        for (int slot = 0; slot <= SLOTS; slot++) {
+            hitters.record(slot, T0 + slot * SLOT);
+            hitters.rotate(T0 + slot * SLOT);
+        }
+
+        // Nothing rotated for much longer than the ring; every slot still in use must be cleared.
+        long later = T0 + 100 * SLOT;
+        hitters.rotate(later);
+        hitters.record(99, later);
+
+        Snapshot snapshot = hitters.top(later, 10);
+        assertThat(snapshot.getTotal()).isEqualTo(1);
+        assertThat(snapshot.getTop()).extracting(Estimate::getId).containsExactly(99L);
+    }
+
+    @Test
+    void heavierIdEvictsALighterCandidate() {
+        // Four candidates per slot, all of them probed by every id.
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 1024, 4, T0);
+        for (long id = 1; id <= 4; id++) {
+            hitters.record(id, T0);
+        }
+        hitters.record(100, T0);
+        assertThat(hitters.top(T0, 10).getTop()).extracting(Estimate::getId).doesNotContain(100L);
+
+        for (int i = 0; i < 9; i++) {
+            hitters.record(100, T0);
+        }
+        // A newcomer with one click does not push out the heavy hitter.
+        hitters.record(200, T0);
+        hitters.record(200, T0);
+
+        Snapshot snapshot = hitters.top(T0, 10);
+        assertThat(snapshot.getTop()).hasSizeLessThanOrEqualTo(4);
+        assertThat(snapshot.getTop()).first().satisfies(top -> {
+            assertThat(top.getId()).isEqualTo(100);
+            assertThat(top.getCount()).isEqualTo(10);
+        });
+        assertThat(snapshot.getTotal()).isEqualTo(16);
+    }
+
+    @Test
+    void topReturnsAtMostTheLimitHighestFirst() {
+        SlidingHeavyHitters hitters = new SlidingHeavyHitters(SLOT, SLOTS, 1024, 16, T0);
+        for (long id = 1; id <= 5; id++) {
+            for (int i = 0; i < id * 10; i++) {
+                hitters.record(id, T0);
+            }
+        }
+
+        assertThat(hitters.top(T0, 2).getTop()).extracting(Estimate::getId).containsExactly(5L, 4L);
+        assertThat(hitters.top(T0, 0).getTop()).isEmpty();
+        assertThat(hitters.getWindowMillis()).isEqualTo(SLOT * SLOTS);
+    }
+
+    @Test
+    void rejectsSizesThatAreNotPowersOfTwo() {
+        assertThatThrownBy(() -> new SlidingHeavyHitters(SLOT, SLOTS, 100, 16, T0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SlidingHeavyHitters(SLOT, SLOTS, 256, 10, T0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,116 @@
+package com.andreibel.shortlink.service.visitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.data.Offset.offset;
+
+class HyperLogLogTests {
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100; i++) {
+            long hash = random.nextLong();
+            sketch.add(hash);
+            sketch.add(hash);
+        }
+
+        assertThat(sketch.isSparse()).isTrue();
+        assertThat(sketch.estimate()).isCloseTo(100L, offset(3L));
+    }
+
+    @Test
+    void largeCardinalitiesStayWithinTheStandardError() {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int cardinality : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add(random.nextLong());
+            }
+            // Five standard errors of 1.6%.
+            assertThat((double) sketch.estimate()).isCloseTo(cardinality, offset(cardinality * 0.08));
+        }
+    }
+
+    @Test
+    void sparseSketchIsPromotedOnceItFills() {
+        HyperLogLog sparse = new HyperLogLog();
+        HyperLogLog dense = new HyperLogLog();
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 5_000; i++) {
+            long hash = random.nextLong();
+            sparse.add(hash);
+            dense.add(hash);
+            if (i == 10) {
+                assertThat(sparse.isSparse()).isTrue();
+            }
+        }
+
+        assertThat(sparse.isSparse()).isFalse();
+        assertThat(sparse.estimate()).isEqualTo(dense.estimate());
+    }
+
+    @Test
+    void mergeEstimatesTheUnionAcrossForms() {
+        HyperLogLog small = new HyperLogLog();
+        HyperLogLog large = new HyperLogLog();
+        SplittableRandom random = new SplittableRandom(4);
+        long[] shared = new long[50];
+        for (int i = 0; i < shared.length; i++) {
+            shared[i] = random.nextLong();
+            small.add(shared[i]);
+            large.add(shared[i]);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            large.add(random.nextLong());
+        }
+
+        HyperLogLog sparseFirst = HyperLogLog.fromBytes(small.toBytes()).merge(large);
+        HyperLogLog denseFirst = HyperLogLog.fromBytes(large.toBytes()).merge(small);
+
+        assertThat(sparseFirst.estimate()).isEqualTo(large.estimate());
+        assertThat(denseFirst.estimate()).isEqualTo(large.estimate());
+        assertThat(sparseFirst.merge(sparseFirst).estimate()).isEqualTo(large.estimate());
+    }
+
+    @Test
+    void serializationRoundTripsBothForms() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int cardinality : new int[]{0, 1, 300, 1_000, 50_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add(random.nextLong());
+            }
+            byte[] bytes = sketch.toBytes();
+            HyperLogLog copy = HyperLogLog.fromBytes(bytes);
+
+            assertThat(bytes.length).isLessThanOrEqualTo(HyperLogLog.MAX_SERIALIZED_SIZE);
+            assertThat(copy.estimate()).isEqualTo(sketch.estimate());
+            assertThat(copy.isEmpty()).isEqualTo(cardinality == 0);
+            assertThat(copy.toBytes()).isEqualTo(bytes);
+        }
+    }
+
+    @Test
+    void sparseSketchesSerializeCompactly() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add(42L);
+        sketch.add(1L << 60);
+
+        assertThat(sketch.toBytes()).hasSize(1 + 2 * 3);
+        assertThat(new HyperLogLog().toBytes()).hasSize(1);
+    }
+
+    @Test
+    void rejectsBytesThatAreNotASketch() {
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[0])).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{2, 0})).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{2, (byte) 0xff, 0, 1}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -15,7 +15,14 @@ const DashboardLayout = () => {
   const [shortenPopUp, setShortenPopUp] = useState(false);
 
 
-  const {isLoading, data: myShortenUrls, refetch } = useFetchMyShortUrls(token, onError)
+  const {
+    isLoading,
+    data: myShortenUrls = [],
+    refetch,
+    fetchNextPage,
+    hasNextPage,
+    isFetchingNextPage,
+  } = useFetchMyShortUrls(token, onError)
 
   const {isLoading: loader, data: totalClicks} = useFetchTotalClicks(token, onError)
 
@@ -62,7 +69,19 @@ const DashboardLayout = () => {
                 </div>
               </div>
             ) : (
-              <ShortenUrlList data={myShortenUrls} />
+              <>
+                <ShortenUrlList data={myShortenUrls} />
+                {hasNextPage && (
+                  <div className="flex justify-center pb-10">
+                    <button
+                      className="bg-custom-gradient px-4 py-2 rounded-md text-white disabled:opacity-60"
+                      disabled={isFetchingNextPage}
+                      onClick={() => fetchNextPage()}>
+                      {isFetchingNextPage ? "Loading..." : "Load more"}
+                    </button>
+                  </div>
+                )}
+              </>
             )}
           </div>
         </div>
@@ -1,30 +1,35 @@
-import {useMutation, useQuery, useQueryClient} from "@tanstack/react-query";
+import {useInfiniteQuery, useMutation, useQuery, useQueryClient} from "@tanstack/react-query";
 import api from "../api/api";
 
+const MY_URLS_PAGE_SIZE = 50;
+
 /**
- * Custom hook to fetch the user's shortened URLs.
- * Uses React Query for data fetching and caching.
+ * Custom hook to fetch the user's shortened URLs one page at a time.
+ * Uses React Query's useInfiniteQuery; the API returns the URLs newest first
+ * and the cursor of the next page in the X-Next-Cursor response header.
+ * Only the first page is loaded up front; call fetchNextPage to load more.
  *
  * @param {string} token - JWT token for authentication.
  * @param {function} [onError] - Optional error handler.
- * @returns {object} React Query result object.
+ * @returns {object} React Query infinite result object whose data is the flat list of loaded URLs.
  */
 export const useFetchMyShortUrls = (token, onError) => {
-  return useQuery({
+  return useInfiniteQuery({
     queryKey: ["my-shortenurls"],
-    queryFn: async () => {
-      return await api.get("/api/urls/myurls", {
+    queryFn: async ({ pageParam }) => {
+      const res = await api.get("/api/urls/myurls", {
+        params: { size: MY_URLS_PAGE_SIZE, ...(pageParam && { cursor: pageParam }) },
         headers: {
           "Content-Type": "application/json",
           Accept: "application/json",
           Authorization: "Bearer " + token,
         },
       });
+      return { urls: res.data, nextCursor: res.headers["x-next-cursor"] ?? null };
     },
-    select: (data) => {
-      // Sort URLs by creation date (newest first)
-      return data.data.sort((a, b) => new Date(b.createdDate) - new Date(a.createdDate));
-    },
+    initialPageParam: null,
+    getNextPageParam: (lastPage) => lastPage.nextCursor ?? undefined,
+    select: (data) => data.pages.flatMap((page) => page.urls),
     onError,
     staleTime: 10000,
   });